@@ -175,6 +175,24 @@ public abstract class AbstractGameMenu implements GameMenu {
             case KeyEvent.VK_F1:
                 controller.getModel().toggleMenu();
                 break;
+            case KeyEvent.VK_F2:
+                controller.getModel().toggleOverview();
+                break;
+            case KeyEvent.VK_F5:
+                controller.setSpeed(SimulationSpeed.NORMAL);
+                break;
+            case KeyEvent.VK_F6:
+                controller.setSpeed(SimulationSpeed.DOUBLE);
+                break;
+            case KeyEvent.VK_F7:
+                controller.setSpeed(SimulationSpeed.QUADRUPLE);
+                break;
+            case KeyEvent.VK_F8:
+                controller.setSpeed(SimulationSpeed.OCTUPLE);
+                break;
+            case KeyEvent.VK_F9:
+                controller.setSpeed(SimulationSpeed.MAXIMUM);
+                break;
             case KeyEvent.VK_DOWN:
                 controller.down();
                 break;
@@ -187,6 +205,12 @@ public abstract class AbstractGameMenu implements GameMenu {
             case KeyEvent.VK_LEFT:
                 controller.left();
                 break;
+            case KeyEvent.VK_PAGE_UP:
+                controller.previousLevel();
+                break;
+            case KeyEvent.VK_PAGE_DOWN:
+                controller.nextLevel();
+                break;
             case KeyEvent.VK_ENTER:
 			if (isModelModeEnabled()) {
                     if (controller.getModel().getSelectionMode().isMultiSelectionEnabled()) {
@@ -0,0 +1,296 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Saves the world in a fixed interval of turns. The regions of the map, that
+ * were reported as changed by the {@link FieldChangeNotifier}, are copied at
+ * the game thread, at most REGIONS_PER_TURN after every turn. A region, that
+ * changes again, is copied again. When the interval is over and no region is
+ * left to copy, the copies and the dwarfs are handed to a background thread,
+ * so a turn never reads the whole world. The first save copies all regions.
+ *
+ * The background thread copies the last save to a temporary file, writes the
+ * changed regions, the dwarfs and the header into it and moves it over the
+ * save, so an interrupted save leaves the previous one intact.
+ *
+ * @see WorldSnapshot
+ */
+public class Autosave implements FieldChangeListener {
+
+    private static final Logger LOG =
+        Logger.getLogger(Autosave.class.getName());
+
+    /** System property with the name of the autosave file. */
+    public static final String FILE_PROPERTY = "goldenhasweg.autosave";
+
+    /** Default name of the autosave file. */
+    public static final String DEFAULT_FILE = "autosave.world";
+
+    /** System property with the name of a save to continue. */
+    public static final String RESTORE_PROPERTY = "goldenhasweg.restore";
+
+    /** Default number of turns between two saves, 5 minutes at 4 turns/s. */
+    public static final int DEFAULT_INTERVAL = 1200;
+
+    /** Maximum number of regions copied after a turn. */
+    public static final int REGIONS_PER_TURN = 32;
+
+    private final File file;
+    private final File tempFile;
+    private final int interval;
+    private final StringBuilder palette = new StringBuilder();
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    // set by the writer, if a save failed and all regions must be copied
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private final ExecutorService writer =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "Autosave");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+    // only used by the game thread
+    private FieldGrid grid = null;
+    private int regionsX;
+    private int regionsY;
+    private BitSet dirty = new BitSet();
+    private int nextRegion = 0;
+    private SortedMap<Integer, byte[]> changedRegions =
+        new TreeMap<Integer, byte[]>();
+    private boolean complete = true;
+    private boolean due = false;
+
+    /**
+     * Creates a new autosave with the default interval
+     *
+     * @param file
+     *            autosave file
+     */
+    public Autosave(final File file) {
+        this(file, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a new autosave
+     *
+     * @param file
+     *            autosave file
+     * @param interval
+     *            number of turns between two saves
+     */
+    public Autosave(final File file, final int interval) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.interval = interval;
+        FieldChangeNotifier.getInstance().addListener(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fieldsChanged(final int minX, final int minY, final int maxX,
+            final int maxY, final int z) {
+        if (grid == null || z < 0 || z >= grid.getSizeZ()) {
+            return;
+        }
+        int fromX = Math.max(0, minX) / WorldSnapshot.REGION_SIZE;
+        int toX = Math.min(grid.getSizeX() - 1, maxX)
+                / WorldSnapshot.REGION_SIZE;
+        int fromY = Math.max(0, minY) / WorldSnapshot.REGION_SIZE;
+        int toY = Math.min(grid.getSizeY() - 1, maxY)
+                / WorldSnapshot.REGION_SIZE;
+        for (int ry = fromY; ry <= toY; ry++) {
+            int row = (z * regionsY + ry) * regionsX;
+            dirty.set(row + fromX, row + toX + 1);
+        }
+    }
+
+    /**
+     * Is called at the game thread after every turn. Copies changed regions
+     * and saves the world, if the interval is over and all changed regions
+     * are copied.
+     *
+     * @param turn
+     *            number of the turns done
+     */
+    public void turnDone(final int turn) {
+        FieldGrid current = FieldGrid.getInstance();
+        if (current != grid || failed.getAndSet(false)) {
+            reset(current);
+        }
+        copyRegions();
+        if (turn % interval == 0) {
+            due = true;
+        }
+        if (due) {
+            save(turn);
+        }
+    }
+
+    /**
+     * Hands the copied regions and the dwarfs to the background thread. If
+     * regions are left to copy or the previous save is still written, nothing
+     * is done.
+     *
+     * @param turn
+     *            number of the turns done
+     * @return true, if a save was started
+     */
+    public boolean save(final int turn) {
+        if (grid == null || !dirty.isEmpty()
+                || !writing.compareAndSet(false, true)) {
+            return false;
+        }
+
+        final WorldSnapshot snapshot = WorldSnapshot.capture(grid, turn,
+            palette, changedRegions, complete);
+        changedRegions = new TreeMap<Integer, byte[]>();
+        complete = false;
+        due = false;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(snapshot);
+                } catch (IOException e) {
+                    LOG.throwing(Autosave.class.getName(), "write()", e);
+                    failed.set(true);
+                } finally {
+                    writing.set(false);
+                }
+            }
+        });
+        return true;
+    }
+
+    // private methods
+
+    /**
+     * Starts over with a new grid, all of its regions are copied.
+     */
+    private void reset(final FieldGrid current) {
+        grid = current;
+        regionsX = WorldSnapshot.regions(grid.getSizeX());
+        regionsY = WorldSnapshot.regions(grid.getSizeY());
+        int count = regionsX * regionsY * grid.getSizeZ();
+        dirty = new BitSet(count);
+        dirty.set(0, count);
+        nextRegion = 0;
+        changedRegions.clear();
+        complete = true;
+    }
+
+    /**
+     * Copies up to REGIONS_PER_TURN changed regions, round robin.
+     */
+    private void copyRegions() {
+        for (int i = 0; i < REGIONS_PER_TURN && !dirty.isEmpty(); i++) {
+            int region = dirty.nextSetBit(nextRegion);
+            if (region < 0) {
+                region = dirty.nextSetBit(0);
+            }
+            dirty.clear(region);
+            nextRegion = region + 1;
+
+            byte[] cells = changedRegions.get(region);
+            if (cells == null) {
+                cells = new byte[WorldSnapshot.REGION_SIZE
+                        * WorldSnapshot.REGION_SIZE];
+                changedRegions.put(region, cells);
+            }
+            WorldSnapshot.captureRegion(grid, region, cells, palette);
+        }
+    }
+
+    /**
+     * Writes the given snapshot into the temporary file and replaces the save
+     * by it. A snapshot, that isn't complete, is written over a copy of the
+     * last save.
+     *
+     * @param snapshot
+     *            snapshot to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private void write(final WorldSnapshot snapshot) throws IOException {
+        if (snapshot.isComplete()) {
+            Files.deleteIfExists(tempFile.toPath());
+        } else {
+            Files.copy(file.toPath(), tempFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+
+            for (Map.Entry<Integer, byte[]> region : snapshot
+                .getChangedRegions().entrySet()) {
+                channel.write(ByteBuffer.wrap(region.getValue()),
+                    WorldSnapshot.regionOffset(region.getKey().intValue()));
+            }
+
+            int count = snapshot.getRegionCount();
+            long end = WorldSnapshot.regionOffset(count);
+            ByteBuffer dwarfs = snapshot.getDwarfSection();
+            end += dwarfs.remaining();
+            channel.write(dwarfs, WorldSnapshot.regionOffset(count));
+            channel.truncate(end);
+
+            ByteBuffer header = ByteBuffer.allocate(WorldSnapshot.HEADER_SIZE);
+            snapshot.writeHeader(header);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        } finally {
+            raf.close();
+        }
+        Files.move(tempFile.toPath(), file.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+
+        LOG.fine("Autosave of turn " + snapshot.getTurn() + ": "
+                + snapshot.getChangedRegions().size() + " of "
+                + snapshot.getRegionCount() + " regions written");
+    }
+}
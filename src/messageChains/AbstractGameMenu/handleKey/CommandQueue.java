@@ -0,0 +1,63 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Queue of commands, that change the state of the game. Any thread can post
+ * commands, e.g. the event dispatch thread for key events. The game thread
+ * executes all pending commands at the beginning of a turn, so the game state
+ * is only changed by the game thread. Posting and draining do not lock.
+ */
+class CommandQueue {
+
+    private final Queue<Runnable> commands =
+        new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Adds a command to the queue. Can be called from any thread.
+     *
+     * @param command
+     *            command to execute at the game thread
+     */
+    public void post(final Runnable command) {
+        commands.offer(command);
+    }
+
+    /**
+     * Executes all pending commands in the order they were posted. Commands
+     * posted while draining are executed, too. Must only be called by the
+     * game thread.
+     *
+     * @return number of executed commands
+     */
+    public int drain() {
+        int count = 0;
+        Runnable command = commands.poll();
+        while (command != null) {
+            command.run();
+            count++;
+            command = commands.poll();
+        }
+        return count;
+    }
+}
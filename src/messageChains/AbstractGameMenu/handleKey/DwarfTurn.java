@@ -0,0 +1,77 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import de.mbi.goldenhasweg.game.Dwarf;
+import de.mbi.goldenhasweg.game.Field;
+import de.mbi.goldenhasweg.game.dwarf.DwarfList;
+
+/**
+ * Executes the turn of all dwarfs one after another in the order of the dwarf
+ * list. A dwarf chooses actions and paths from the shared action list and
+ * path finding, so two dwarfs claiming the same resource or field are
+ * resolved by this order and the result stays deterministic. The fields a
+ * dwarf left, entered or worked on are reported as changed after its turn.
+ * Dwarfs added or removed during the turn do not disturb the iteration.
+ */
+class DwarfTurn {
+
+    /**
+     * Executes the turn of all dwarfs of the dwarf list.
+     */
+    public void execute() {
+        List<Dwarf> dwarfs = new ArrayList<Dwarf>();
+        Iterator<Dwarf> iterator = DwarfList.getInstance().getDwarfs();
+        while (iterator.hasNext()) {
+            dwarfs.add(iterator.next());
+        }
+
+        for (Dwarf dwarf : dwarfs) {
+            Field start = dwarf.getPosition();
+            boolean lazy = dwarf.getAction() == null;
+            dwarf.doNextTurn();
+            Field position = dwarf.getPosition();
+            if (position != start) {
+                reportChange(start);
+                reportChange(position);
+            } else if (!lazy) {
+                // a working dwarf changes its field or a neighbour
+                reportChange(position);
+            }
+        }
+    }
+
+    /**
+     * Reports the neighbourhood of the given field as changed
+     *
+     * @param field
+     *            field of a dwarf or null
+     */
+    private static void reportChange(final Field field) {
+        if (field != null) {
+            FieldChangeNotifier.getInstance().neighbourhoodChanged(
+                field.getPos());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Listener, that is informed about fields, which may have changed.
+ *
+ * @see FieldChangeNotifier
+ */
+public interface FieldChangeListener {
+
+    /**
+     * Called at the game thread, if fields in the given area may have changed
+     * their type, resources or dwarfs.
+     *
+     * @param minX
+     *            most left x position, inclusive
+     * @param minY
+     *            most upper y position, inclusive
+     * @param maxX
+     *            most right x position, inclusive
+     * @param maxY
+     *            most lower y position, inclusive
+     * @param z
+     *            z position
+     */
+    void fieldsChanged(int minX, int minY, int maxX, int maxY, int z);
+}
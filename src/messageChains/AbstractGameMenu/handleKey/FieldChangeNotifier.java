@@ -0,0 +1,108 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.mbi.goldenhasweg.game.Pos;
+
+/**
+ * Distributes changes of fields to all registered listeners. Fields change by
+ * the actions of dwarfs and by the commands of the player, both happen at the
+ * game thread. The field classes can't report their changes, so the code,
+ * that executes turns and commands, reports the area it worked on.
+ */
+public final class FieldChangeNotifier {
+
+    private static final FieldChangeNotifier INSTANCE =
+        new FieldChangeNotifier();
+
+    private final List<FieldChangeListener> listeners =
+        new CopyOnWriteArrayList<FieldChangeListener>();
+
+    /**
+     * Creates the notifier
+     */
+    private FieldChangeNotifier() {
+    }
+
+    /**
+     * Returns the notifier
+     *
+     * @return the notifier
+     */
+    public static FieldChangeNotifier getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers a listener
+     *
+     * @param listener
+     *            listener to inform about changes
+     */
+    public void addListener(final FieldChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     *
+     * @param listener
+     *            registered listener
+     */
+    public void removeListener(final FieldChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reports, that the field at the given position and its neighbours may
+     * have changed.
+     *
+     * @param pos
+     *            position of the field
+     */
+    public void neighbourhoodChanged(final Pos pos) {
+        fieldsChanged(pos.getX() - 1, pos.getY() - 1, pos.getX() + 1,
+            pos.getY() + 1, pos.getZ());
+    }
+
+    /**
+     * Reports, that fields in the given area may have changed.
+     *
+     * @param minX
+     *            most left x position, inclusive
+     * @param minY
+     *            most upper y position, inclusive
+     * @param maxX
+     *            most right x position, inclusive
+     * @param maxY
+     *            most lower y position, inclusive
+     * @param z
+     *            z position
+     */
+    public void fieldsChanged(final int minX, final int minY, final int maxX,
+            final int maxY, final int z) {
+        for (FieldChangeListener listener : listeners) {
+            listener.fieldsChanged(minX, minY, maxX, maxY, z);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.mbi.goldenhasweg.game.Field;
+import de.mbi.goldenhasweg.game.Pos;
+import de.mbi.goldenhasweg.game.map.PosImpl;
+import de.mbi.goldenhasweg.game.map.WorldMap;
+
+/**
+ * Dense index of the fields of the world map. The fields are kept in a flat
+ * array at x + y * sizeX + z * sizeX * sizeY, so looking up a field is a
+ * bounds check and an array access instead of hashing a position. The grid
+ * holds the same field objects as the map, changes of a field are visible in
+ * both. The array costs one reference per field in addition to the map, a
+ * small part of the memory of the field objects themselves. The hash code of
+ * a position collides for most positions of a map, so a lookup in the map
+ * searches a large bucket, a lookup in the grid doesn't.
+ *
+ * The grid is built once for every world map. A lookup allocates nothing and
+ * doesn't change any state, so the grid can be read by several threads.
+ */
+public final class FieldGrid {
+
+    private static volatile FieldGrid instance;
+
+    private final WorldMap map;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final Field[] fields;
+
+    /**
+     * Returns the grid of the current world map. The grid is rebuilt, if the
+     * world map was replaced.
+     *
+     * @return grid of the current world map
+     */
+    public static FieldGrid getInstance() {
+        WorldMap map = WorldMap.getInstance();
+        FieldGrid grid = instance;
+        if (grid == null || grid.map != map) {
+            grid = new FieldGrid(map);
+            instance = grid;
+        }
+        return grid;
+    }
+
+    private FieldGrid(final WorldMap map) {
+        this.map = map;
+        this.sizeX = map.getSizeX();
+        this.sizeY = map.getSizeY();
+        this.sizeZ = map.getSizeZ();
+
+        fields = new Field[sizeX * sizeY * sizeZ];
+        Pos pos = new PosImpl(0, 0, 0);
+        int index = 0;
+        for (int z = 0; z < sizeZ; z++) {
+            pos.setZ(z);
+            for (int y = 0; y < sizeY; y++) {
+                pos.setY(y);
+                for (int x = 0; x < sizeX; x++) {
+                    pos.setX(x);
+                    fields[index++] = map.getField(pos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the field at the given position
+     *
+     * @param x
+     *            x coordinate
+     * @param y
+     *            y coordinate
+     * @param z
+     *            z coordinate
+     * @return field or null, if the position is outside of the map
+     */
+    public Field getField(final int x, final int y, final int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY
+                || z >= sizeZ) {
+            return null;
+        }
+        return fields[x + (y + z * sizeY) * sizeX];
+    }
+
+    /**
+     * Returns the field at the given position
+     *
+     * @param pos
+     *            position
+     * @return field or null, if the position is outside of the map
+     */
+    public Field getField(final Pos pos) {
+        return getField(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Returns the number of fields in a row
+     *
+     * @return size in x direction
+     */
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    /**
+     * Returns the number of fields in a column
+     *
+     * @return size in y direction
+     */
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    /**
+     * Returns the number of z-levels
+     *
+     * @return size in z direction
+     */
+    public int getSizeZ() {
+        return sizeZ;
+    }
+}
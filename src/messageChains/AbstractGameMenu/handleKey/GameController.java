@@ -20,11 +20,14 @@ package messageChains.AbstractGameMenu.handleKey;
  */
 
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.Iterator;
 import java.util.logging.Logger;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import de.mbi.goldenhasweg.game.Dwarf;
 import de.mbi.goldenhasweg.game.Locatable;
@@ -35,6 +38,8 @@ import de.mbi.goldenhasweg.view.ControllerName;
 import de.mbi.goldenhasweg.view.MainController;
 import de.mbi.goldenhasweg.view.game.GameInitializer;
 
+import messageChains.AbstractGameMenu.handleKey.TurnProfiler.Phase;
+
 /**
  * The controller of the game. If this controller is started for the first time
  * a world map is initialized from a file.
@@ -50,6 +55,13 @@ public class GameController extends Thread implements Controller {
     private final GameModel model;
     private GameMenu menu;
     private final GamePanel view;
+    private final TurnScheduler scheduler = new TurnScheduler();
+    private final DwarfTurn dwarfTurn = new DwarfTurn();
+    private final CommandQueue commands = new CommandQueue();
+    private final TurnProfiler profiler;
+    private final InputJournal journal;
+    private final Autosave autosave;
+    private volatile int turnNumber = 0;
 
     /**
      * Creates a new GameController. Loads world data from file world.cfg,
@@ -59,14 +71,75 @@ public class GameController extends Thread implements Controller {
      *            The main controller of the game.
      */
     public GameController(final MainController mainController) {
+        this(mainController, true);
+    }
+
+    /**
+     * Creates a new GameController without a main controller and without a
+     * view. The world is initialized in the same way as for a normal game, but
+     * nothing is painted. Use this controller to run the simulation on
+     * machines without a display.
+     * 
+     * @return headless game controller
+     * @see HeadlessSimulation
+     */
+    public static GameController createHeadless() {
+        return new GameController(null, false);
+    }
+
+    /**
+     * Creates a new GameController.
+     * 
+     * @param mainController
+     *            The main controller of the game or null, if headless.
+     * @param createView
+     *            true, if the panel that displays the game should be created
+     */
+    private GameController(final MainController mainController,
+            final boolean createView) {
+        // record keys and autosave in interactive games only
+        if (createView) {
+            journal = InputJournal.startRecording();
+            // the game ends with the virtual machine
+            Runtime.getRuntime().addShutdownHook(new Thread("Journal") {
+                @Override
+                public void run() {
+                    journal.close(turnNumber);
+                }
+            });
+            autosave = new Autosave(new File(System.getProperty(
+                Autosave.FILE_PROPERTY, Autosave.DEFAULT_FILE)));
+        } else {
+            journal = null;
+            autosave = null;
+        }
+
         // read configuration files
         GameInitializer.configureResourcesAndWorkshpos();
         GameInitializer.initializeWorld();
+        String saved = System.getProperty(Autosave.RESTORE_PROPERTY);
+        if (createView && saved != null) {
+            restore(new File(saved));
+        }
 
         this.mainController = mainController;
         this.model = new GameModel();
+        this.profiler = model.getProfiler();
         this.menu = createDefaultMenu();
-        view = new GamePanel(model, menu);
+        model.setMenu(menu);
+        if (createView) {
+            view = new GamePanel(model);
+            if (Boolean.getBoolean(GamePanel.ACTIVE_RENDERING_PROPERTY)) {
+                view.enableActiveRendering(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduler.requestFrame(GameController.this);
+                    }
+                });
+            }
+        } else {
+            view = null;
+        }
     }
 
     /**
@@ -77,36 +150,45 @@ public class GameController extends Thread implements Controller {
     @Override
     public void run() {
         centerScreenAtTheFirstDwarf();
-        long time;
-
-        // repeat
-        while (true) {
-            // current time
-            time = System.currentTimeMillis();
-
-            if (!model.isPause()) {
-                // next turn
-                doNextTurn();
-            }
-
-            // next turn
-            model.updateTurn();
-            // paint world and menu
-            mainController.repaint();
+        scheduler.reset();
 
-            // calculate time to wait
-            time = 250 - System.currentTimeMillis() + time;
-            if (time < 0) {
-                time = 0;
-                LOG.warning("Operation too slow");
-            }
-
-            // short break
-            try {
-                Thread.sleep(time);
-            } catch (InterruptedException e) {
-                // don't handle this exception
+        // repeat, until the game thread is interrupted
+        try {
+            while (!isInterrupted()) {
+                // handle the input of the player
+                boolean input = commands.drain() > 0;
+
+                int ticks = scheduler.ticksDue();
+                boolean paused = model.isPause();
+                if (!paused) {
+                    for (int i = 0; i < ticks; i++) {
+                        // next turn
+                        doNextTurn();
+                    }
+                }
+
+                boolean frameDue = scheduler.frameDue();
+                if (frameDue) {
+                    // next animation phase
+                    long start = profiler.start();
+                    model.updateTurn();
+                    profiler.stop(Phase.MODEL_UPDATE, start);
+                }
+                if (scheduler.takeFrameRequest() || frameDue || input) {
+                    // compose the next frame, while the last one is painted
+                    long start = profiler.start();
+                    model.publishSnapshot();
+                    profiler.stop(Phase.COMPOSE, start);
+                    // paint world and menu
+                    repaint();
+                }
+                profiler.logIfDue();
+
+                // short break
+                scheduler.awaitNextEvent(paused);
             }
+        } finally {
+            model.dispose();
         }
     }
 
@@ -116,8 +198,57 @@ public class GameController extends Thread implements Controller {
      * the action list.
      */
     public void doNextTurn() {
-        DwarfList.getInstance().doNextTurn();
+        long start = profiler.start();
+        dwarfTurn.execute();
+        profiler.stop(Phase.DWARF_TURNS, start);
+
+        start = profiler.start();
         ActionList.getInstance().nextTurn();
+        profiler.stop(Phase.ACTION_LIST, start);
+
+        turnNumber++;
+        model.worldChanged();
+        if (autosave != null) {
+            autosave.turnDone(turnNumber);
+        }
+    }
+
+    /**
+     * Returns the number of turns done since the game started
+     * 
+     * @return number of turns
+     */
+    public int getTurnNumber() {
+        return turnNumber;
+    }
+
+    /**
+     * Changes the speed of the simulation. Must be called by the game thread,
+     * e.g. from a command of the key handling.
+     * 
+     * @param speed
+     *            new speed
+     */
+    public void setSpeed(final SimulationSpeed speed) {
+        scheduler.setSpeed(speed);
+    }
+
+    /**
+     * Returns the current speed of the simulation
+     * 
+     * @return current speed
+     */
+    public SimulationSpeed getSpeed() {
+        return scheduler.getSpeed();
+    }
+
+    /**
+     * Returns the journal of all handled keys
+     * 
+     * @return journal or null, if the controller is headless
+     */
+    public InputJournal getInputJournal() {
+        return journal;
     }
 
     /**
@@ -130,7 +261,7 @@ public class GameController extends Thread implements Controller {
         menu.setParentMenu(this.menu);
         this.menu = menu;
         this.menu.onShow();
-        view.updateMenu(menu);
+        updateMenu();
     }
 
     /**
@@ -140,7 +271,7 @@ public class GameController extends Thread implements Controller {
         if (menu.getParentMenue() != null && menu.onClose()) {
             menu = menu.getParentMenue();
             menu.onShow();
-            view.updateMenu(menu);
+            updateMenu();
         }
     }
 
@@ -152,7 +283,7 @@ public class GameController extends Thread implements Controller {
             menu.onCancel();
             menu = menu.getParentMenue();
             menu.onShow();
-            view.updateMenu(menu);
+            updateMenu();
         }
     }
 
@@ -178,12 +309,23 @@ public class GameController extends Thread implements Controller {
 
     /**
      * {@inheritDoc}
+     * 
+     * @return the game panel or null, if the controller is headless
      */
     @Override
     public JPanel getView() {
         return view;
     }
 
+    /**
+     * Returns true, if this controller has no view and no main controller.
+     * 
+     * @return true, if this controller is headless
+     */
+    public boolean isHeadless() {
+        return mainController == null;
+    }
+
     /**
      * Moves the cursor up. The behavior depends on the selection mode.
      * 
@@ -224,6 +366,20 @@ public class GameController extends Thread implements Controller {
             model.getSelectionMode().isSelectionEnabled());
     }
 
+    /**
+     * Displays the z-level above the current one.
+     */
+    public void previousLevel() {
+        model.getSelector().previousLevel();
+    }
+
+    /**
+     * Displays the z-level below the current one.
+     */
+    public void nextLevel() {
+        model.getSelector().nextLevel();
+    }
+
     /**
      * Centers the screen at the given location
      * 
@@ -238,10 +394,18 @@ public class GameController extends Thread implements Controller {
     }
 
     /**
-     * Displays the main menu.
+     * Displays the main menu. The controllers are switched at the event
+     * dispatch thread.
      */
     public void switchToEscController() {
-        mainController.activateController(ControllerName.MainMenu);
+        if (mainController != null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    mainController.activateController(ControllerName.MainMenu);
+                }
+            });
+        }
     }
 
     // -----------------------------------
@@ -251,8 +415,19 @@ public class GameController extends Thread implements Controller {
     /** {@inheritDoc} */
     @Override
     public void keyPressed(final KeyEvent keyEvent) {
-        menu.handleKey(keyEvent);
-        mainController.repaint();
+        if (isHeadless()) {
+            handleKey(keyEvent);
+        } else {
+            // the game thread handles the key at the beginning of the next
+            // turn, composes and paints the changed frame
+            commands.post(new Runnable() {
+                @Override
+                public void run() {
+                    handleKey(keyEvent);
+                }
+            });
+            scheduler.requestFrame(this);
+        }
     }
 
     /** {@inheritDoc} */
@@ -282,6 +457,79 @@ public class GameController extends Thread implements Controller {
     // private methods
     // -----------------------------
 
+    /**
+     * Records the given key and passes it to the current menu.
+     * 
+     * @param keyEvent
+     *            key event
+     */
+    private void handleKey(final KeyEvent keyEvent) {
+        if (journal != null) {
+            journal.record(turnNumber, keyEvent);
+        }
+        menu.handleKey(keyEvent);
+        // items may be executed or selected by any key
+        model.invalidateLayers();
+        // commands may change the world, moving the cursor doesn't
+        if (!isNavigationKey(keyEvent.getKeyCode())) {
+            model.worldChanged();
+            model.selectedAreaChanged();
+        }
+    }
+
+    /**
+     * Returns true, if the key only moves the cursor
+     * 
+     * @param keyCode
+     *            code of the key
+     * @return true, if the key is an arrow key or changes the z-level
+     */
+    private static boolean isNavigationKey(final int keyCode) {
+        return keyCode == KeyEvent.VK_UP || keyCode == KeyEvent.VK_DOWN
+                || keyCode == KeyEvent.VK_LEFT || keyCode == KeyEvent.VK_RIGHT
+                || keyCode == KeyEvent.VK_PAGE_UP
+                || keyCode == KeyEvent.VK_PAGE_DOWN;
+    }
+
+    /**
+     * Paints world and menu, if the controller is not headless. If neither
+     * menu nor screen definition changed, only the cells that changed since
+     * the last frame are painted.
+     */
+    private void repaint() {
+        if (mainController == null) {
+            return;
+        }
+        if (view.isActiveRendering()) {
+            view.renderActive(model.getSnapshot());
+            return;
+        }
+        if (!view.repaintChanges(model.getSnapshot())) {
+            mainController.repaint();
+        }
+    }
+
+    /**
+     * Displays the current menu with the next published snapshot.
+     */
+    private void updateMenu() {
+        model.setMenu(menu);
+    }
+
+    /**
+     * Continues the game of the given save
+     * 
+     * @param file
+     *            save written by the autosave
+     */
+    private static void restore(final File file) {
+        try {
+            WorldSnapshot.load(file).restore();
+        } catch (IOException e) {
+            LOG.throwing(GameController.class.getName(), "restore()", e);
+        }
+    }
+
     /**
      * Create the default game menu
      * 
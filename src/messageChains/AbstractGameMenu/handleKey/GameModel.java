@@ -19,7 +19,9 @@ package messageChains.AbstractGameMenu.handleKey;
  * this program; if not, see <http://www.gnu.org/licenses/>.
  */
 
-import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.mbi.goldenhasweg.game.Field;
 import de.mbi.goldenhasweg.game.Locatable;
@@ -37,6 +39,47 @@ import de.mbi.goldenhasweg.view.game.SelectionMode;
  */
 public class GameModel implements Model {
 
+    /** Minimum number of cells, that are composed in parallel. */
+    public static final int PARALLEL_THRESHOLD = 16384;
+
+    /** Number of rows composed by one fork join task. */
+    private static final int STRIPE_ROWS = 8;
+
+    // flag of the exchanged snapshot index, if the snapshot wasn't painted
+    private static final int FRESH = 4;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /**
+     * Composes a horizontal stripe of a snapshot. Every stripe paints into its
+     * own cell.
+     */
+    private final class ComposeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RenderSnapshot target;
+        private final int fromRow;
+        private final int toRow;
+
+        ComposeTask(final RenderSnapshot target, final int fromRow,
+                final int toRow) {
+            this.target = target;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= STRIPE_ROWS) {
+                composeRows(target, fromRow, toRow, new RenderCell());
+            } else {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new ComposeTask(target, fromRow, middle),
+                    new ComposeTask(target, middle, toRow));
+            }
+        }
+    }
+
     // if selection mode is multi and the selection of the first
     // position of the area is done this flag is true
     private boolean firstSelectionDone = false;
@@ -54,6 +97,38 @@ public class GameModel implements Model {
 
     private ScreenDefinition screenDefinition;
 
+    private final TurnProfiler profiler = new TurnProfiler();
+
+    // changed by the game thread, read by the painting thread
+    private volatile int layerVersion = 0;
+    // current menu and its copy, game thread only
+    private GameMenu menu;
+    private MenuLines menuLines;
+    // triple buffer: the game thread composes the back snapshot, the
+    // painting thread paints the front one, the third one is exchanged
+    private final RenderSnapshot[] snapshots = new RenderSnapshot[] {
+        new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot() };
+    // index of the exchanged snapshot, FRESH if it wasn't taken yet
+    private final AtomicInteger exchange = new AtomicInteger(2);
+    private int back = 0;
+    private int front = 1;
+    // last published snapshot, game thread only
+    private RenderSnapshot published = null;
+    // last taken snapshot, painting thread only
+    private RenderSnapshot taken = null;
+    private final RenderCell cell = new RenderCell();
+    // state of the world at the last composition, to reuse unchanged cells
+    private int worldVersion = 0;
+    private int composedWorldVersion = -1;
+    private int composedTurn = -1;
+    private final int[] composedMarks = new int[4];
+    // created for a z-level, when it is shown the first time, and released,
+    // if the world map is replaced or the model is disposed
+    private WorldMap cachedMap;
+    private Overview[] overviews;
+    private LevelSurface[] levelSurfaces;
+    private boolean overviewShown = false;
+
     /**
      * Creates a new game model
      */
@@ -62,6 +137,9 @@ public class GameModel implements Model {
         screenDefinition = ScreenDefinition.MENU_RIGHT;
         selector1 = new Selector(screenDefinition);
         selector2 = new Selector(screenDefinition);
+        cachedMap = WorldMap.getInstance();
+        overviews = new Overview[cachedMap.getSizeZ()];
+        levelSurfaces = new LevelSurface[cachedMap.getSizeZ()];
     }
 
     /**
@@ -84,30 +162,321 @@ public class GameModel implements Model {
      * @param graphic
      *            Cell to display
      */
-    protected void paint(final Pos pos, final GraphicCharacter graphic) {
+    protected void paint(final Pos pos, final RenderCell graphic) {
+        paint(pos.getX(), pos.getY(), pos.getZ(), graphic);
+    }
+
+    /**
+     * Sets the character to display at the given position.
+     * 
+     * @param x
+     *            x position in the world
+     * @param y
+     *            y position in the world
+     * @param z
+     *            z position in the world
+     * @param graphic
+     *            Cell to display
+     */
+    protected void paint(final int x, final int y, final int z,
+            final RenderCell graphic) {
         // paint field
-        paintField(pos, graphic);
+        paintField(x, y, z, graphic);
 
-        if (highlightedItem != null && selector1.isSelectedPosition(pos)) {
+        if (highlightedItem != null && selector1.isSelectedPosition(x, y, z)) {
             // paint highlighted item
             if (turn % 2 == 0) {
                 highlightedItem.paint(graphic, 0, pause);
-                highlightDuration++;
             } else {
                 paintSelectionMark(graphic, 'x');
             }
+        } else if (isSelectionMarkPosition(x, y, z)) {
+            // paint selection mark for single selection
+            paintSelectionMark(graphic, 'X');
+        } else if (isMultiSelectionMarkPosition(x, y, z)) {
+            // paint selection mark for multi selection
+            paintSelectionMark(graphic, '+');
+        }
+    }
 
+    /**
+     * Renders the visible part of the world into the back snapshot and
+     * exchanges it for the snapshot, that isn't painted. Call this method at
+     * the game thread between two turns. Large frames are composed in
+     * horizontal stripes in parallel, the world is not changed meanwhile.
+     */
+    protected void publishSnapshot() {
+        RenderSnapshot next = snapshots[back];
+        int level = selector1.getOffsetZ();
+        next.reset(screenDefinition, selector1.getOffsetX(),
+            selector1.getOffsetY(), level, pause);
+
+        RenderSnapshot last = published;
+        if (overviewShown) {
+            Overview overview = getOverview(level);
+            overview.refresh(turn, pause);
+            next.setOverview(overview);
+        } else if (last != null && last.getOffsetZ() != level
+                && getLevelSurface(level).restore(next)) {
+            // switched to a level, that was displayed before
+            LevelSurface surface = getLevelSurface(level);
+            int width = next.getWidth();
+            for (int i = 0; i < surface.getDirtyCount(); i++) {
+                int index = surface.getDirtyCell(i);
+                composeCell(next, index % width + next.getOffsetX(),
+                    index / width + next.getOffsetY());
+            }
+            int[] marks = surface.getMarks();
+            composeCell(next, marks[0], marks[1]);
+            composeCell(next, marks[2], marks[3]);
+            composeCell(next, selector1.getSelectedX(),
+                selector1.getSelectedY());
+            composeCell(next, selector2.getSelectedX(),
+                selector2.getSelectedY());
+        } else if (last != null && last.getOffsetZ() == level
+                && next.canScrollFrom(last)
+                && composedWorldVersion == worldVersion
+                && composedTurn == turn) {
+            // only the view moved: shift the last frame and compose the
+            // exposed cells and the selection marks
+            next.copyShifted(last);
+            composeExposed(next, last);
+            composeCell(next, composedMarks[0], composedMarks[1]);
+            composeCell(next, composedMarks[2], composedMarks[3]);
+            composeCell(next, selector1.getSelectedX(),
+                selector1.getSelectedY());
+            composeCell(next, selector2.getSelectedX(),
+                selector2.getSelectedY());
+        } else if (next.getWidth() * next.getHeight() >= PARALLEL_THRESHOLD) {
+            POOL.invoke(new ComposeTask(next, 0, next.getHeight()));
+        } else {
+            composeRows(next, 0, next.getHeight(), cell);
+        }
+        composedWorldVersion = worldVersion;
+        composedTurn = turn;
+        composedMarks[0] = selector1.getSelectedX();
+        composedMarks[1] = selector1.getSelectedY();
+        composedMarks[2] = selector2.getSelectedX();
+        composedMarks[3] = selector2.getSelectedY();
+        if (!overviewShown) {
+            getLevelSurface(level).store(next, composedMarks);
+        }
+
+        // the highlighted item is shown for 4 frames
+        if (highlightedItem != null && turn % 2 == 0) {
+            highlightDuration++;
             if (highlightDuration == 4) {
                 highlightedItem = null;
                 highlightDuration = 0;
             }
-        } else if (isSelectionMarkPosition(pos)) {
-            // paint selection mark for single selection
-            paintSelectionMark(graphic, 'X');
-        } else if (isMultiSelectionMarkPosition(pos)) {
-            // paint selection mark for multi selection
-            paintSelectionMark(graphic, '+');
         }
+
+        // the menu is only copied, if it changed since the last frame
+        if (menu != null && (menuLines == null
+                || menuLines.getLayerVersion() != layerVersion)) {
+            menuLines = new MenuLines(menu, layerVersion);
+        }
+        next.setMenuLines(menuLines);
+
+        published = next;
+        back = exchange.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * Switches between the overview of the whole map and the normal view.
+     * The overview of a level is kept up to date by field changes once it was
+     * shown.
+     */
+    public void toggleOverview() {
+        overviewShown = !overviewShown;
+    }
+
+    /**
+     * Returns true, if the overview is shown
+     * 
+     * @return true, if the overview is shown
+     */
+    public boolean isOverviewShown() {
+        return overviewShown;
+    }
+
+    /**
+     * Marks the world as changed, so the next frame is composed completely.
+     * Call this method at the game thread after a turn or a command, that can
+     * change fields, dwarfs or resources.
+     */
+    public void worldChanged() {
+        worldVersion++;
+    }
+
+    /**
+     * Reports the fields between both cursors as changed, because commands of
+     * the player work on the selected fields.
+     */
+    public void selectedAreaChanged() {
+        FieldChangeNotifier.getInstance().fieldsChanged(
+            Math.min(selector1.getSelectedX(), selector2.getSelectedX()),
+            Math.min(selector1.getSelectedY(), selector2.getSelectedY()),
+            Math.max(selector1.getSelectedX(), selector2.getSelectedX()),
+            Math.max(selector1.getSelectedY(), selector2.getSelectedY()),
+            selector1.getOffsetZ());
+    }
+
+    /**
+     * Returns the overview of the given z-level
+     * 
+     * @param z
+     *            z-level
+     * @return overview, which receives field changes
+     */
+    private Overview getOverview(final int z) {
+        checkWorldMap();
+        if (overviews[z] == null) {
+            overviews[z] = new Overview(z);
+            FieldChangeNotifier.getInstance().addListener(overviews[z]);
+        }
+        return overviews[z];
+    }
+
+    /**
+     * Drops overviews and surfaces, if the world map was replaced. They have
+     * the size of the replaced map.
+     */
+    private void checkWorldMap() {
+        WorldMap map = WorldMap.getInstance();
+        if (map != cachedMap) {
+            releaseCaches();
+            cachedMap = map;
+            overviews = new Overview[map.getSizeZ()];
+            levelSurfaces = new LevelSurface[map.getSizeZ()];
+        }
+    }
+
+    /**
+     * Unregisters and drops all overviews and surfaces
+     */
+    private void releaseCaches() {
+        FieldChangeNotifier notifier = FieldChangeNotifier.getInstance();
+        for (int z = 0; z < overviews.length; z++) {
+            if (overviews[z] != null) {
+                notifier.removeListener(overviews[z]);
+                overviews[z] = null;
+            }
+        }
+        for (int z = 0; z < levelSurfaces.length; z++) {
+            if (levelSurfaces[z] != null) {
+                notifier.removeListener(levelSurfaces[z]);
+                levelSurfaces[z] = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the cached surface of the given z-level
+     * 
+     * @param z
+     *            z-level
+     * @return surface, which receives field changes
+     */
+    private LevelSurface getLevelSurface(final int z) {
+        checkWorldMap();
+        if (levelSurfaces[z] == null) {
+            levelSurfaces[z] = new LevelSurface(z);
+            FieldChangeNotifier.getInstance().addListener(levelSurfaces[z]);
+        }
+        return levelSurfaces[z];
+    }
+
+    /**
+     * Paints all cells of the snapshot, that are not visible in the last one.
+     * 
+     * @param target
+     *            snapshot to fill
+     * @param last
+     *            last snapshot
+     */
+    private void composeExposed(final RenderSnapshot target,
+            final RenderSnapshot last) {
+        for (int iy = 0; iy < target.getHeight(); iy++) {
+            for (int ix = 0; ix < target.getWidth(); ix++) {
+                if (!target.isVisibleIn(last, ix, iy)) {
+                    composeCell(target, ix + target.getOffsetX(),
+                        iy + target.getOffsetY());
+                }
+            }
+        }
+    }
+
+    /**
+     * Paints the cell at the given world position, if it is visible in the
+     * snapshot.
+     * 
+     * @param target
+     *            snapshot to fill
+     * @param x
+     *            x position in the world
+     * @param y
+     *            y position in the world
+     */
+    private void composeCell(final RenderSnapshot target, final int x,
+            final int y) {
+        int ix = x - target.getOffsetX();
+        int iy = y - target.getOffsetY();
+        if (ix >= 0 && ix < target.getWidth() && iy >= 0
+                && iy < target.getHeight()) {
+            paint(x, y, target.getOffsetZ(), cell);
+            target.set(ix, iy, cell);
+        }
+    }
+
+    /**
+     * Paints the given rows of a snapshot
+     * 
+     * @param target
+     *            snapshot to fill
+     * @param fromRow
+     *            first row, inclusive
+     * @param toRow
+     *            last row, exclusive
+     * @param graphic
+     *            cell to paint into
+     */
+    private void composeRows(final RenderSnapshot target, final int fromRow,
+            final int toRow, final RenderCell graphic) {
+        int z = target.getOffsetZ();
+        for (int iy = fromRow; iy < toRow; iy++) {
+            int y = iy + target.getOffsetY();
+            for (int ix = 0; ix < target.getWidth(); ix++) {
+                paint(ix + target.getOffsetX(), y, z, graphic);
+                target.set(ix, iy, graphic);
+            }
+        }
+    }
+
+    /**
+     * Returns the last published snapshot of the visible world. Call this
+     * method at the game thread.
+     * 
+     * @return last snapshot or null, if no snapshot was published
+     */
+    public RenderSnapshot getSnapshot() {
+        return published;
+    }
+
+    /**
+     * Returns the newest published snapshot for painting. The snapshot, that
+     * was taken before, is handed back to the game thread, if a newer one was
+     * published. The returned snapshot isn't changed, until the next call.
+     * Only one thread may take snapshots.
+     * 
+     * @return snapshot or null, if no snapshot was published
+     */
+    public RenderSnapshot takeSnapshot() {
+        if ((exchange.get() & FRESH) != 0) {
+            front = exchange.getAndSet(front) & ~FRESH;
+            taken = snapshots[front];
+        }
+        return taken;
     }
 
     /**
@@ -121,9 +490,28 @@ public class GameModel implements Model {
      */
     protected void paintField(final Pos position,
             final GraphicCharacter graphic) {
+        paintField(position.getX(), position.getY(), position.getZ(),
+            graphic);
+    }
+
+    /**
+     * Renders the contents of the field at the given position in the given
+     * cell.
+     * 
+     * @param x
+     *            x position in the world
+     * @param y
+     *            y position in the world
+     * @param z
+     *            z position in the world
+     * @param graphic
+     *            Cell to display
+     */
+    protected void paintField(final int x, final int y, final int z,
+            final GraphicCharacter graphic) {
         graphic.setCharacter(0);
 
-        Field field = WorldMap.getInstance().getField(position);
+        Field field = FieldGrid.getInstance().getField(x, y, z);
         if (field != null) {
             field.paint(graphic, turn, pause);
         }
@@ -134,6 +522,45 @@ public class GameModel implements Model {
      */
     public void setPause() {
         pause = !pause;
+        invalidateLayers();
+    }
+
+    /**
+     * Releases the caches, that receive field changes. Call this method,
+     * when the model is discarded, otherwise the notifier keeps them.
+     */
+    public void dispose() {
+        releaseCaches();
+    }
+
+    /**
+     * Sets the menu, that is copied into the published snapshots. Call this
+     * method at the game thread.
+     * 
+     * @param newMenu
+     *            current menu
+     */
+    public void setMenu(final GameMenu newMenu) {
+        menu = newMenu;
+        invalidateLayers();
+    }
+
+    /**
+     * Marks frame and menu as changed, so the cached layers are rendered
+     * again. Call this method at the game thread, whenever the menu changes.
+     */
+    public void invalidateLayers() {
+        layerVersion++;
+    }
+
+    /**
+     * Returns the version of frame and menu. The version changes, whenever
+     * the menu or the pause mode changes.
+     * 
+     * @return layer version
+     */
+    public int getLayerVersion() {
+        return layerVersion;
     }
 
     /**
@@ -217,6 +644,15 @@ public class GameModel implements Model {
     }
 
 
+    /**
+     * Returns the profiler, that measures the phases of the game loop
+     * 
+     * @return profiler
+     */
+    public TurnProfiler getProfiler() {
+        return profiler;
+    }
+
     /**
      * Highlights the given building, item or dwarf for a short time.
      * 
@@ -250,6 +686,7 @@ public class GameModel implements Model {
         }
         selector1.updateScreenDefinition(screenDefinition);
         selector2.updateScreenDefinition(screenDefinition);
+        invalidateLayers();
     }
 
     // ------------------------------
@@ -260,32 +697,38 @@ public class GameModel implements Model {
      * Returns true, if a multi selection is active, the first selection is done
      * and the selected position is given position
      * 
-     * @param pos
-     *            position
+     * @param x
+     *            x position in the world
+     * @param y
+     *            y position in the world
+     * @param z
+     *            z position in the world
      * @return true, if a multi selection is active, the first selection is done
      *         and the selected position is given position
      */
-    private boolean isMultiSelectionMarkPosition(final Pos pos) {
+    private boolean isMultiSelectionMarkPosition(final int x, final int y,
+            final int z) {
         return turn % 2 == 0 && selectionMode.isMultiSelectionEnabled()
-                && firstSelectionDone
-                && pos.getX() - selector2.getOffsetX()
-                        == selector2.getSelectedPosX()
-                && pos.getY() - selector2.getOffsetY()
-                        == selector2.getSelectedPosY();
+                && firstSelectionDone && selector2.isSelectedPosition(x, y, z);
     }
 
     /**
      * Returns true if a selection is active and the selection mark is at the
      * given position
      * 
-     * @param pos
-     *            position
+     * @param x
+     *            x position in the world
+     * @param y
+     *            y position in the world
+     * @param z
+     *            z position in the world
      * @return true if a selection is active and the selection mark is at the
      *         given position
      */
-    private boolean isSelectionMarkPosition(final Pos pos) {
+    private boolean isSelectionMarkPosition(final int x, final int y,
+            final int z) {
         return selectionMode.isSelectionEnabled()
-                && selector1.isSelectedPosition(pos);
+                && selector1.isSelectedPosition(x, y, z);
     }
 
     /**
@@ -296,14 +739,14 @@ public class GameModel implements Model {
      * @param sign
      *            Sign to paint
      */
-    private void paintSelectionMark(final GraphicCharacter graphic,
+    private void paintSelectionMark(final RenderCell graphic,
             final char sign) {
         graphic.setCharacter(sign);
 
         // use inverted background color
-        int rgb = graphic.getBackgroundColor().getRGB();
+        int rgb = graphic.getBackgroundRgb();
         int inverseRgb = rgb ^ 0x00FFFFFF;
-        graphic.setForegroundColor(new Color(inverseRgb));
+        graphic.setForegroundRgb(0xFF000000 | inverseRgb);
     }
 
 	boolean isModeEnabled(GameController gameController) {
@@ -19,16 +19,23 @@ package messageChains.AbstractGameMenu.handleKey;
  * this program; if not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
 import java.util.List;
 
-import de.mbi.goldenhasweg.game.Pos;
-import de.mbi.goldenhasweg.game.map.PosImpl;
-import de.mbi.goldenhasweg.util.GraphicCharacter;
 import de.mbi.goldenhasweg.view.AbstractPanel;
 import de.mbi.goldenhasweg.view.ScreenDefinition;
-import de.mbi.goldenhasweg.view.game.GameMenuItem;
+import messageChains.AbstractGameMenu.handleKey.TurnProfiler.Phase;
 
 /**
  * A panel that can display the game.
@@ -39,30 +46,167 @@ public class GamePanel extends AbstractPanel {
 
     private static final long serialVersionUID = 1L;
 
+    private static final int BLACK = Color.BLACK.getRGB();
+
+    /** System property, that enables active rendering of the game view. */
+    public static final String ACTIVE_RENDERING_PROPERTY =
+        "goldenhasweg.render.active";
+
     private final GameModel model;
-    private GameMenu menu;
+    // last snapshot, for which a repaint was requested; game thread only
+    private RenderSnapshot presented;
+    private int presentedLayerVersion;
+    private final GlyphAtlas atlas = new GlyphAtlas(FILENAME, CHARACTER_WIDTH,
+        CHARACTER_HEIGHT, GlyphAtlas.DEFAULT_BUDGET);
+    // renders the game cells without Java2D, if enabled
+    private final SoftwareRaster raster =
+        Boolean.getBoolean(SoftwareRaster.PROPERTY) ? new SoftwareRaster(
+            FILENAME, CHARACTER_WIDTH, CHARACTER_HEIGHT) : null;
+
+    // active rendering: the game thread renders into the back buffer, the
+    // event dispatch thread only copies it to the screen
+    private final Object bufferLock = new Object();
+    private VolatileImage backBuffer;
+    private volatile Runnable exposeListener;
+
+    // frame and menu, cached by the painting thread
+    private BufferedImage layer;
+    private ScreenDefinition layerScreenDefinition;
+    private int layerVersion;
+    private BufferedImage overviewImage;
 
     /**
      * Creates a new panel
      * 
      * @param model
      *            the game model
-     * @param menu
-     *            the current menu
      */
-    public GamePanel(final GameModel model, final GameMenu menu) {
+    public GamePanel(final GameModel model) {
         this.model = model;
-        this.menu = menu;
     }
 
     /**
-     * Displays a new game menu at the panel
+     * Requests a repaint of all cells, that differ from the last presented
+     * snapshot. Call this method at the game thread after a snapshot was
+     * published.
+     * 
+     * @param snapshot
+     *            published snapshot
+     * @return false, if the snapshot can't be compared with the last one and
+     *         the whole panel must be repainted
+     */
+    public boolean repaintChanges(final RenderSnapshot snapshot) {
+        List<Rectangle> damage = new ArrayList<Rectangle>();
+        if (collectDamage(snapshot, damage, false) == null) {
+            return false;
+        }
+        for (Rectangle rectangle : damage) {
+            repaint(rectangle);
+        }
+        return true;
+    }
+
+    /**
+     * Switches to active rendering. The game thread renders every frame into
+     * an accelerated back buffer by {@link #renderActive(RenderSnapshot)}
+     * and copies it to the screen itself. Swing only repaints the
+     * panel, if it was covered, from the back buffer.
+     * 
+     * @param listener
+     *            called, if the back buffer was lost and a new frame must be
+     *            rendered
+     */
+    public void enableActiveRendering(final Runnable listener) {
+        exposeListener = listener;
+        setIgnoreRepaint(true);
+    }
+
+    /**
+     * Returns true, if the game thread renders the panel
+     * 
+     * @return true, if active rendering is enabled
+     */
+    public boolean isActiveRendering() {
+        return exposeListener != null;
+    }
+
+    /**
+     * Renders the published snapshot into the back buffer and copies it to the
+     * screen. If neither menu nor screen definition changed, only the cells
+     * that changed since the last frame are rendered. If the view was
+     * scrolled, the visible part of the last frame is moved inside the back
+     * buffer first. Call this method at the game thread after a snapshot was
+     * published.
      * 
-     * @param menu
-     *            new menu
+     * @param snapshot
+     *            published snapshot
      */
-    public void updateMenu(final GameMenu menu) {
-        this.menu = menu;
+    public void renderActive(final RenderSnapshot snapshot) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration == null || !isShowing()) {
+            // the back buffer doesn't show the last snapshot anymore
+            presented = null;
+            return;
+        }
+
+        List<Rectangle> damage = new ArrayList<Rectangle>();
+        Point scrolled = collectDamage(snapshot, damage, true);
+        boolean changesOnly = scrolled != null;
+        synchronized (bufferLock) {
+            do {
+                int state = VolatileImage.IMAGE_INCOMPATIBLE;
+                if (backBuffer != null && backBuffer.getWidth() == getWidth()
+                        && backBuffer.getHeight() == getHeight()) {
+                    state = backBuffer.validate(configuration);
+                }
+                if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    backBuffer =
+                        configuration.createCompatibleVolatileImage(
+                            getWidth(), getHeight());
+                    changesOnly = false;
+                } else if (state == VolatileImage.IMAGE_RESTORED) {
+                    changesOnly = false;
+                }
+
+                Graphics2D g = backBuffer.createGraphics();
+                try {
+                    if (changesOnly) {
+                        if (scrolled.x != 0 || scrolled.y != 0) {
+                            scrollGame(g, snapshot.getScreenDefinition(),
+                                scrolled.x, scrolled.y);
+                        }
+                        // the back buffer still holds the last frame, clear
+                        // the damage before the transparent glyphs are drawn
+                        g.setColor(Color.BLACK);
+                        for (Rectangle rectangle : damage) {
+                            g.fillRect(rectangle.x, rectangle.y,
+                                rectangle.width, rectangle.height);
+                        }
+                        for (Rectangle rectangle : damage) {
+                            g.setClip(rectangle);
+                            paintPanel(g, snapshot);
+                        }
+                    } else {
+                        g.setColor(Color.BLACK);
+                        g.fillRect(0, 0, getWidth(), getHeight());
+                        paintPanel(g, snapshot);
+                    }
+                } finally {
+                    g.dispose();
+                }
+
+                Graphics screen = getGraphics();
+                if (screen != null) {
+                    try {
+                        screen.drawImage(backBuffer, 0, 0, null);
+                    } finally {
+                        screen.dispose();
+                    }
+                }
+                changesOnly = false;
+            } while (backBuffer.contentsLost());
+        }
+        Toolkit.getDefaultToolkit().sync();
     }
 
     /**
@@ -70,15 +214,257 @@ public class GamePanel extends AbstractPanel {
      */
     @Override
     public void paint(final Graphics g) {
+        if (!isActiveRendering()) {
+            paintPanel(g, model.takeSnapshot());
+            return;
+        }
+
+        // the game thread renders, just show the last frame
+        synchronized (bufferLock) {
+            if (backBuffer != null && !backBuffer.contentsLost()) {
+                g.drawImage(backBuffer, 0, 0, null);
+                return;
+            }
+        }
+        exposeListener.run();
+    }
+
+    /**
+     * Moves the visible part of the game frame in the back buffer
+     * 
+     * @param g
+     *            Graphics of the back buffer
+     * @param screenDefinition
+     *            current screen definition
+     * @param dx
+     *            number of cells, the view moved to the right
+     * @param dy
+     *            number of cells, the view moved down
+     */
+    private void scrollGame(final Graphics g,
+            final ScreenDefinition screenDefinition, final int dx,
+            final int dy) {
+        int shiftX = dx * (CHARACTER_WIDTH + SPACE);
+        int shiftY = dy * (CHARACTER_HEIGHT + SPACE);
+        Rectangle bounds = getGameBounds(screenDefinition);
+        Rectangle source =
+            bounds.intersection(new Rectangle(bounds.x + shiftX, bounds.y
+                    + shiftY, bounds.width, bounds.height));
+        if (!source.isEmpty()) {
+            g.copyArea(source.x, source.y, source.width, source.height,
+                -shiftX, -shiftY);
+        }
+    }
+
+    /**
+     * Collects the areas of all cells, that differ from the last presented
+     * snapshot. Every row with changed cells results in one damage rectangle
+     * from the first to the last changed cell.
+     * 
+     * @param snapshot
+     *            published snapshot
+     * @param damage
+     *            list for the damage rectangles
+     * @param scroll
+     *            true, if the last frame can be moved, otherwise the damage
+     *            of a scrolled view can't be collected
+     * @return number of cells the view moved or null, if the
+     *         snapshot can't be compared with the last one
+     */
+    private Point collectDamage(final RenderSnapshot snapshot,
+            final List<Rectangle> damage, final boolean scroll) {
+        RenderSnapshot last = presented;
+        presented = snapshot;
+        int lastLayerVersion = presentedLayerVersion;
+        presentedLayerVersion = layerVersionOf(snapshot);
+        if (last == null || lastLayerVersion != presentedLayerVersion) {
+            return null;
+        }
+        if (!snapshot.hasSameLayout(last)
+                && !(scroll && snapshot.canScrollFrom(last))) {
+            return null;
+        }
+
+        int left =
+            snapshot.getScreenDefinition().getStartGameFrame()
+                    * CHARACTER_WIDTH;
+        for (int iy = 0; iy < snapshot.getHeight(); iy++) {
+            int first = -1;
+            int lastChanged = -1;
+            for (int ix = 0; ix < snapshot.getWidth(); ix++) {
+                if (!snapshot.isVisibleIn(last, ix, iy)
+                        || !snapshot.isSameCell(last, ix, iy)) {
+                    if (first < 0) {
+                        first = ix;
+                    }
+                    lastChanged = ix;
+                }
+            }
+            if (first >= 0) {
+                damage.add(new Rectangle(left + first
+                        * (CHARACTER_WIDTH + SPACE), CHARACTER_HEIGHT + iy
+                        * (CHARACTER_HEIGHT + SPACE), (lastChanged - first + 1)
+                        * (CHARACTER_WIDTH + SPACE), CHARACTER_HEIGHT + SPACE));
+            }
+        }
+        return new Point(snapshot.getOffsetX() - last.getOffsetX(),
+            snapshot.getOffsetY() - last.getOffsetY());
+    }
+
+    /**
+     * Returns the layer version of the menu copied into the snapshot
+     * 
+     * @param snapshot
+     *            published snapshot
+     * @return layer version or -1, if no menu was copied
+     */
+    private static int layerVersionOf(final RenderSnapshot snapshot) {
+        MenuLines lines = snapshot.getMenuLines();
+        return lines != null ? lines.getLayerVersion() : -1;
+    }
+
+    /**
+     * Paints frame, game and menu, as far as they intersect the clip.
+     * 
+     * @param g
+     *            Graphics
+     * @param snapshot
+     *            snapshot of the game or null
+     */
+    private void paintPanel(final Graphics g, final RenderSnapshot snapshot) {
+        long start = model.getProfiler().start();
         ScreenDefinition screenDefinition = model.getScreenDefinition();
 
-        drawFrame(g, screenDefinition);
-        drawGame(g, screenDefinition);
-        if (screenDefinition.hasMenu()) {
-            drawMenu(g, screenDefinition);
+        // damage rectangles of changed cells don't touch frame and menu
+        Rectangle clip = g.getClipBounds();
+        boolean gameOnly =
+            clip != null && getGameBounds(screenDefinition).contains(clip);
+        if (!gameOnly) {
+            drawLayer(g, screenDefinition,
+                snapshot != null ? snapshot.getMenuLines() : null);
+        }
+        drawGame(g, snapshot, screenDefinition, clip);
+        model.getProfiler().stop(Phase.REPAINT, start);
+    }
+
+    /**
+     * Draws frame and menu from the cached layer. The layer is rendered again,
+     * if the screen definition or the layer version of the menu changed.
+     * 
+     * @param g
+     *            Graphics
+     * @param screenDefinition
+     *            current screen definition
+     * @param lines
+     *            copy of the menu or null, if no snapshot was published yet
+     */
+    private void drawLayer(final Graphics g,
+            final ScreenDefinition screenDefinition, final MenuLines lines) {
+        int version = lines != null ? lines.getLayerVersion() : -1;
+        if (layer == null || layer.getWidth() != getWidth()
+                || layer.getHeight() != getHeight()) {
+            layer = createLayer();
+            layerScreenDefinition = null;
+        }
+        if (layer == null) {
+            // not displayed yet
+            drawFrame(g, screenDefinition);
+            if (screenDefinition.hasMenu() && lines != null) {
+                drawMenu(g, screenDefinition, lines);
+            }
+            return;
+        }
+
+        if (layerScreenDefinition != screenDefinition
+                || layerVersion != version) {
+            Graphics2D layerGraphics = layer.createGraphics();
+            try {
+                layerGraphics.setComposite(AlphaComposite.Clear);
+                layerGraphics.fillRect(0, 0, layer.getWidth(),
+                    layer.getHeight());
+                layerGraphics.setComposite(AlphaComposite.SrcOver);
+                drawFrame(layerGraphics, screenDefinition);
+                if (screenDefinition.hasMenu() && lines != null) {
+                    drawMenu(layerGraphics, screenDefinition, lines);
+                }
+            } finally {
+                layerGraphics.dispose();
+            }
+            layerScreenDefinition = screenDefinition;
+            layerVersion = version;
+        }
+        g.drawImage(layer, 0, 0, null);
+    }
+
+    /**
+     * Creates a transparent image in the size of the panel
+     * 
+     * @return image or null, if the panel has no size
+     */
+    private BufferedImage createLayer() {
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return null;
+        }
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration == null) {
+            return new BufferedImage(getWidth(), getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        }
+        return configuration.createCompatibleImage(getWidth(), getHeight(),
+            Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Draws the character from the glyph atlas instead of filtering the tile
+     * image.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public void drawCharacter(final Graphics g, final int x, final int y,
+            final int c, final Color color) {
+        if (!atlas.draw(g, x, y, c, color.getRGB(), this)) {
+            super.drawCharacter(g, x, y, c, color);
+        }
+    }
+
+    /**
+     * Draws a character in the color given as ARGB value
+     * 
+     * @param g
+     *            Graphics
+     * @param x
+     *            x position in pixels
+     * @param y
+     *            y position in pixels
+     * @param c
+     *            character
+     * @param rgb
+     *            foreground color as ARGB value
+     */
+    private void drawCharacter(final Graphics g, final int x, final int y,
+            final int c, final int rgb) {
+        if (!atlas.draw(g, x, y, c, rgb, this)) {
+            super.drawCharacter(g, x, y, c, new Color(rgb, true));
         }
     }
 
+    /**
+     * Returns the area of the panel, that shows the world
+     * 
+     * @param screenDefinition
+     *            current screen definition
+     * @return area of the game frame in pixels
+     */
+    private Rectangle getGameBounds(final ScreenDefinition screenDefinition) {
+        return new Rectangle(screenDefinition.getStartGameFrame()
+                * CHARACTER_WIDTH, CHARACTER_HEIGHT,
+            (screenDefinition.getWidthGameFrame() + 1)
+                    * (CHARACTER_WIDTH + SPACE),
+            (screenDefinition.getHeight() + 1)
+                    * (CHARACTER_HEIGHT + SPACE));
+    }
+
     /**
      * Renders the menu
      * 
@@ -86,117 +472,197 @@ public class GamePanel extends AbstractPanel {
      *            Graphics
      * @param screenDefinition
      *            current screen definition
+     * @param lines
+     *            copy of the menu
      */
     private void drawMenu(final Graphics g,
-            final ScreenDefinition screenDefinition) {
+            final ScreenDefinition screenDefinition, final MenuLines lines) {
         int posXMenuLine =
             screenDefinition.getStartMenuFrame() * CHARACTER_WIDTH
                     + CHARACTER_WIDTH;
-        List<GameMenuItem> menuItems = menu.getMenuItems();
         int iy = 2;
         drawString(g, posXMenuLine, iy * CHARACTER_HEIGHT,
-            menu.getHeadline(), Color.WHITE);
+            lines.getHeadline(), Color.WHITE);
         drawString(g, posXMenuLine, (iy + 1) * CHARACTER_HEIGHT,
             "-----------------------------------------------".substring(0,
-                menu.getHeadline()
+                lines.getHeadline()
                         .length()), Color.WHITE);
 
         iy = 5;
-        if (!menu.isFirstPage()) {
+        if (!lines.isFirstPage()) {
             drawCharacter(
                 g,
                 (screenDefinition.getStartMenuFrame() + 25) * CHARACTER_WIDTH,
                 iy * CHARACTER_HEIGHT, 24, Color.WHITE);
         }
 
-        for (GameMenuItem menuItem : menuItems) {
+        for (int index = 0; index < lines.getItemCount(); index++) {
             int posYMenuLine = iy * CHARACTER_HEIGHT;
 
-            if (menuItem.isSelected()) {
+            if (lines.isSelected(index)) {
                 for (int i = 0; i < 24; i++) {
                     drawCharacter(g, posXMenuLine + i * CHARACTER_HEIGHT,
                         posYMenuLine, 219, Color.GRAY);
                 }
             }
 
-            if (menuItem.getKey() == ' ') {
+            if (lines.getKey(index) == ' ') {
                 drawString(g, posXMenuLine, posYMenuLine,
-                    menuItem.getDescription(), Color.WHITE);
+                    lines.getDescription(index), Color.WHITE);
             } else {
                 drawCharacter(g, posXMenuLine, posYMenuLine,
-                    menuItem.getKey(), Color.YELLOW);
+                    lines.getKey(index), Color.YELLOW);
                 drawCharacter(g, posXMenuLine + 1 * CHARACTER_WIDTH,
                     posYMenuLine, ':', Color.WHITE);
                 drawString(g, posXMenuLine + 3 * CHARACTER_WIDTH,
-                    posYMenuLine, menuItem.getDescription(), Color.WHITE);
+                    posYMenuLine, lines.getDescription(index), Color.WHITE);
             }
             iy++;
         }
 
-        if (!menu.isLastPage()) {
+        if (!lines.isLastPage()) {
             drawCharacter(
                 g,
                 (screenDefinition.getStartMenuFrame() + 25) * CHARACTER_WIDTH,
                 iy * CHARACTER_HEIGHT - CHARACTER_HEIGHT, 25, Color.WHITE);
         }
 
-        menuItems = menu.getFooterMenuItems();
         iy = screenDefinition.getHeight();
-        for (GameMenuItem menuItem : menuItems) {
+        for (int index = 0; index < lines.getFooterCount(); index++) {
             int posYMenuLine = iy * CHARACTER_HEIGHT;
 
-            if (menuItem.getKey() == ' ') {
+            if (lines.getFooterKey(index) == ' ') {
                 drawString(g, posXMenuLine, posYMenuLine,
-                    menuItem.getDescription(), Color.WHITE);
+                    lines.getFooterDescription(index), Color.WHITE);
             } else {
                 drawCharacter(g, posXMenuLine, posYMenuLine,
-                    menuItem.getKey(), Color.YELLOW);
+                    lines.getFooterKey(index), Color.YELLOW);
                 drawCharacter(g, posXMenuLine + 1 * CHARACTER_WIDTH,
                     posYMenuLine, ':', Color.WHITE);
 
                 drawString(g, posXMenuLine + 3 * CHARACTER_WIDTH,
-                    posYMenuLine, menuItem.getDescription(), Color.WHITE);
+                    posYMenuLine, lines.getFooterDescription(index),
+                    Color.WHITE);
             }
             iy--;
         }
     }
 
     /**
-     * Renders the game
+     * Renders all cells of the game, which intersect the clip
      * 
      * @param g
      *            Graphics
+     * @param snapshot
+     *            snapshot of the game or null
      * @param screenDefinition
      *            current screen definition
+     * @param clip
+     *            clip bounds or null, if the whole game must be rendered
      */
-    private void drawGame(final Graphics g,
-            final ScreenDefinition screenDefinition) {
-        int offsetY = CHARACTER_HEIGHT;
-        int offsetX =
-            screenDefinition.getStartGameFrame() * CHARACTER_WIDTH;
-        Pos pos = new PosImpl(0, 0, 0);
-        GraphicCharacter graphic = new GraphicCharacter();
-        for (int iy = 0; iy <= screenDefinition.getHeight(); iy++) {
-            for (int ix = 0; ix <= screenDefinition.getWidthGameFrame(); ix++) {
-                pos.setX(ix + model.getSelector().getOffsetX());
-                pos.setY(iy + model.getSelector().getOffsetY());
-                model.paint(pos, graphic);
-
-                if (graphic.getBackgroundColor() != Color.BLACK) {
-                    drawCharacter(g, offsetX, offsetY, 219,
-                        graphic.getBackgroundColor());
+    private void drawGame(final Graphics g, final RenderSnapshot snapshot,
+            final ScreenDefinition screenDefinition, final Rectangle clip) {
+        if (snapshot == null
+                || snapshot.getScreenDefinition() != screenDefinition) {
+            return;
+        }
+        if (snapshot.isOverview()) {
+            drawOverview(g, snapshot);
+            return;
+        }
+
+        int left = screenDefinition.getStartGameFrame() * CHARACTER_WIDTH;
+        int minX = 0;
+        int maxX = snapshot.getWidth() - 1;
+        int minY = 0;
+        int maxY = snapshot.getHeight() - 1;
+        if (clip != null) {
+            minX = Math.max(minX, (clip.x - left) / (CHARACTER_WIDTH + SPACE));
+            maxX =
+                Math.min(maxX, (clip.x + clip.width - 1 - left)
+                        / (CHARACTER_WIDTH + SPACE));
+            minY =
+                Math.max(minY, (clip.y - CHARACTER_HEIGHT)
+                        / (CHARACTER_HEIGHT + SPACE));
+            maxY =
+                Math.min(maxY, (clip.y + clip.height - 1 - CHARACTER_HEIGHT)
+                        / (CHARACTER_HEIGHT + SPACE));
+        }
+
+        if (raster != null
+                && raster.draw(g, snapshot, left, CHARACTER_HEIGHT, minX, maxX,
+                    minY, maxY, this)) {
+            return;
+        }
+
+        // glyphs are transparent, so damaged cells are cleared first,
+        // otherwise moved dwarfs leave their old glyph behind
+        boolean damaged = clip != null;
+        Color fill = null;
+        int offsetY = CHARACTER_HEIGHT + minY * (CHARACTER_HEIGHT + SPACE);
+        int offsetX = left + minX * (CHARACTER_WIDTH + SPACE);
+        for (int iy = minY; iy <= maxY; iy++) {
+            for (int ix = minX; ix <= maxX; ix++) {
+                int background = snapshot.getBackgroundRgb(ix, iy);
+                if (damaged) {
+                    if (fill == null || fill.getRGB() != background) {
+                        fill = new Color(background, true);
+                    }
+                    g.setColor(fill);
+                    g.fillRect(offsetX, offsetY, CHARACTER_WIDTH + SPACE,
+                        CHARACTER_HEIGHT + SPACE);
+                } else if (background != BLACK) {
+                    drawCharacter(g, offsetX, offsetY, 219, background);
                 }
 
-                drawCharacter(g, offsetX, offsetY, graphic.getCharacter(),
-                    graphic.getForegroundColor());
+                drawCharacter(g, offsetX, offsetY,
+                    snapshot.getCharacter(ix, iy),
+                    snapshot.getForegroundRgb(ix, iy));
                 offsetX = offsetX + CHARACTER_WIDTH + SPACE;
             }
-            offsetX =
-                screenDefinition.getStartGameFrame() * CHARACTER_WIDTH;
+            offsetX = left + minX * (CHARACTER_WIDTH + SPACE);
             offsetY = offsetY + CHARACTER_HEIGHT + SPACE;
         }
     }
 
+    /**
+     * Renders the overview scaled to the game frame and marks the visible
+     * part of the world
+     * 
+     * @param g
+     *            Graphics
+     * @param snapshot
+     *            snapshot with the overview
+     */
+    private void drawOverview(final Graphics g,
+            final RenderSnapshot snapshot) {
+        int width = snapshot.getOverviewWidth();
+        int height = snapshot.getOverviewHeight();
+        if (overviewImage == null || overviewImage.getWidth() != width
+                || overviewImage.getHeight() != height) {
+            overviewImage =
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        overviewImage.setRGB(0, 0, width, height,
+            snapshot.getOverviewColors(), 0, width);
+
+        Rectangle bounds = getGameBounds(snapshot.getScreenDefinition());
+        double scale =
+            Math.min((double) bounds.width / width, (double) bounds.height
+                    / height);
+        g.setColor(Color.BLACK);
+        g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        g.drawImage(overviewImage, bounds.x, bounds.y,
+            (int) (width * scale), (int) (height * scale), null);
+
+        double fieldScale = scale / snapshot.getOverviewBlockSize();
+        g.setColor(Color.YELLOW);
+        g.drawRect(bounds.x + (int) (snapshot.getOffsetX() * fieldScale),
+            bounds.y + (int) (snapshot.getOffsetY() * fieldScale),
+            (int) (snapshot.getWidth() * fieldScale),
+            (int) (snapshot.getHeight() * fieldScale));
+    }
+
     /**
      * Renders the frame
      * 
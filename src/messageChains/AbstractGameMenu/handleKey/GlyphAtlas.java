@@ -0,0 +1,257 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import de.mbi.goldenhasweg.view.ImageCache;
+
+/**
+ * Tinted copies of the character tiles. Every color has its own atlas image
+ * in the format of the screen, a cell of the atlas is rasterized, when the
+ * character is drawn in this color the first time. Afterwards drawing a
+ * character is a single blit of a part of the atlas.
+ *
+ * The atlas images are kept in LRU order. If the memory budget is exceeded,
+ * the least recently used color is dropped, so colors computed at runtime
+ * don't fill the memory.
+ *
+ * An atlas is not thread-safe, it must only be used by the painting thread.
+ */
+final class GlyphAtlas {
+
+    private static final Logger LOG =
+        Logger.getLogger(GlyphAtlas.class.getName());
+
+    /** Default memory budget of all atlas images in bytes. */
+    public static final long DEFAULT_BUDGET = 8 * 1024 * 1024;
+
+    private static final int COLUMNS = 16;
+    private static final int CELLS = 256;
+    private static final int WHITE = Color.WHITE.getRGB();
+
+    /**
+     * Atlas of one color.
+     */
+    private static final class Page {
+        private final BufferedImage image;
+        private final boolean[] rasterized = new boolean[CELLS];
+
+        Page(final BufferedImage image) {
+            this.image = image;
+        }
+    }
+
+    private final String filename;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final long budget;
+
+    private int[] source;
+    private boolean unavailable = false;
+    private int sourceWidth;
+    private int sourceHeight;
+
+    private final Map<Integer, Page> pages =
+        new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Integer, Page> eldest) {
+                return (long) size() * getPageBytes() > budget;
+            }
+        };
+    // the last used page, characters of one color are often drawn in a row
+    private int lastRgb;
+    private Page lastPage;
+
+    /**
+     * Creates a new atlas
+     *
+     * @param filename
+     *            name of the tile image, see {@link ImageCache}
+     * @param cellWidth
+     *            width of a character
+     * @param cellHeight
+     *            height of a character
+     * @param budget
+     *            maximum memory of all atlas images in bytes
+     */
+    GlyphAtlas(final String filename, final int cellWidth,
+            final int cellHeight, final long budget) {
+        this.filename = filename;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.budget = budget;
+    }
+
+    /**
+     * Draws a character in the given color.
+     *
+     * @param g
+     *            Graphics
+     * @param x
+     *            x position in pixels
+     * @param y
+     *            y position in pixels
+     * @param c
+     *            character
+     * @param rgb
+     *            foreground color as ARGB value
+     * @param component
+     *            component, that is painted
+     * @return false, if the tile image couldn't be loaded
+     */
+    public boolean draw(final Graphics g, final int x, final int y,
+            final int c, final int rgb, final Component component) {
+        if (source == null) {
+            if (unavailable || !loadSource(component)) {
+                unavailable = true;
+                return false;
+            }
+        }
+        int cell = c & (CELLS - 1);
+
+        Page page = getPage(rgb, component);
+        if (!page.rasterized[cell]) {
+            rasterize(page, cell, rgb);
+        }
+
+        int sx = cell % COLUMNS * cellWidth;
+        int sy = cell / COLUMNS * cellHeight;
+        g.drawImage(page.image, x, y, x + cellWidth, y + cellHeight, sx, sy,
+            sx + cellWidth, sy + cellHeight, null);
+        return true;
+    }
+
+    /**
+     * Returns the number of colors in the atlas
+     *
+     * @return number of atlas images
+     */
+    public int getColorCount() {
+        return pages.size();
+    }
+
+    // private methods
+
+    private long getPageBytes() {
+        return (long) sourceWidth * sourceHeight * 4;
+    }
+
+    private Page getPage(final int rgb, final Component component) {
+        if (lastPage != null && lastRgb == rgb) {
+            return lastPage;
+        }
+        Page page = pages.get(rgb);
+        if (page == null) {
+            page = new Page(createImage(component));
+            pages.put(rgb, page);
+        }
+        lastRgb = rgb;
+        lastPage = page;
+        return page;
+    }
+
+    private BufferedImage createImage(final Component component) {
+        GraphicsConfiguration configuration =
+            component.getGraphicsConfiguration();
+        if (configuration == null) {
+            return new BufferedImage(sourceWidth, sourceHeight,
+                BufferedImage.TYPE_INT_ARGB);
+        }
+        return configuration.createCompatibleImage(sourceWidth, sourceHeight,
+            Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Copies a cell of the tile image into the atlas and replaces white pixels
+     * by the color, like the ColorImageFilter does.
+     */
+    private void rasterize(final Page page, final int cell, final int rgb) {
+        int left = cell % COLUMNS * cellWidth;
+        int top = cell / COLUMNS * cellHeight;
+        int[] pixels = new int[cellWidth * cellHeight];
+        for (int iy = 0; iy < cellHeight; iy++) {
+            for (int ix = 0; ix < cellWidth; ix++) {
+                int pixel = source[left + ix + (top + iy) * sourceWidth];
+                pixels[ix + iy * cellWidth] = pixel == WHITE ? rgb : pixel;
+            }
+        }
+        page.image.setRGB(left, top, cellWidth, cellHeight, pixels, 0,
+            cellWidth);
+        page.rasterized[cell] = true;
+    }
+
+    private boolean loadSource(final Component component) {
+        source = loadTiles(filename, cellWidth, cellHeight, component);
+        if (source == null) {
+            return false;
+        }
+        sourceWidth = COLUMNS * cellWidth;
+        sourceHeight = CELLS / COLUMNS * cellHeight;
+        return true;
+    }
+
+    /**
+     * Loads the pixels of all 256 characters of a tile image. The characters
+     * are arranged in 16 columns.
+     *
+     * @param filename
+     *            name of the tile image, see {@link ImageCache}
+     * @param cellWidth
+     *            width of a character
+     * @param cellHeight
+     *            height of a character
+     * @param component
+     *            component, that is painted
+     * @return ARGB values of the 16 columns of characters row by row or null,
+     *         if the image couldn't be loaded
+     */
+    static int[] loadTiles(final String filename, final int cellWidth,
+            final int cellHeight, final Component component) {
+        Image image = ImageCache.getImage(filename, component);
+        if (image == null || image.getWidth(null) < COLUMNS * cellWidth
+                || image.getHeight(null) < CELLS / COLUMNS * cellHeight) {
+            LOG.warning("tile image " + filename + " not available");
+            return null;
+        }
+
+        int width = COLUMNS * cellWidth;
+        int height = CELLS / COLUMNS * cellHeight;
+        BufferedImage copy =
+            new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy.getRGB(0, 0, width, height, null, 0, width);
+    }
+}
@@ -0,0 +1,146 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.logging.Logger;
+
+/**
+ * Runs the simulation of the game as fast as possible without any view. There
+ * is no break between two turns and nothing is painted. The runtime of every
+ * turn is measured, so the throughput of the simulation can be measured on
+ * machines without a display.
+ */
+public class HeadlessSimulation {
+
+    private static final Logger LOG =
+        Logger.getLogger(HeadlessSimulation.class.getName());
+
+    /**
+     * Condition to stop a headless simulation.
+     */
+    public interface StopCondition {
+
+        /**
+         * Returns true, if the simulation should stop
+         *
+         * @param turn
+         *            number of turns, that are done
+         * @return true, if the simulation should stop
+         */
+        boolean isReached(int turn);
+    }
+
+    private final GameController controller;
+
+    /**
+     * Creates a new headless simulation with a new headless game controller.
+     */
+    public HeadlessSimulation() {
+        this(GameController.createHeadless());
+    }
+
+    /**
+     * Creates a new headless simulation
+     *
+     * @param controller
+     *            controller that executes the turns
+     */
+    public HeadlessSimulation(final GameController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Returns the controller that executes the turns
+     *
+     * @return controller
+     */
+    public GameController getController() {
+        return controller;
+    }
+
+    /**
+     * Runs the given number of turns.
+     *
+     * @param turns
+     *            number of turns
+     * @return measured runtime of the turns
+     */
+    public SimulationReport run(final int turns) {
+        return runUntil(new StopCondition() {
+            @Override
+            public boolean isReached(final int turn) {
+                return false;
+            }
+        }, turns);
+    }
+
+    /**
+     * Runs turns until the given condition holds, but not more than maxTurns.
+     *
+     * @param condition
+     *            condition to stop the simulation. It is checked before every
+     *            turn.
+     * @param maxTurns
+     *            maximum number of turns
+     * @return measured runtime of the turns
+     */
+    public SimulationReport runUntil(final StopCondition condition,
+            final int maxTurns) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        int turn = 0;
+
+        long start = System.nanoTime();
+        while (turn < maxTurns && !condition.isReached(turn)) {
+            runTurn(latencies);
+            turn++;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        SimulationReport report = new SimulationReport(latencies, elapsed);
+        LOG.info(report.toString());
+        return report;
+    }
+
+    /**
+     * Runs a single turn and records its runtime
+     *
+     * @param latencies
+     *            histogram of the runtime of the turns
+     */
+    void runTurn(final LatencyHistogram latencies) {
+        long turnStart = System.nanoTime();
+        controller.doNextTurn();
+        latencies.record(System.nanoTime() - turnStart);
+    }
+
+    /**
+     * Runs a headless simulation and prints the report.
+     *
+     * @param args
+     *            optional number of turns, 1000 by default
+     */
+    public static void main(final String[] args) {
+        int turns = 1000;
+        if (args.length > 0) {
+            turns = Integer.parseInt(args[0]);
+        }
+        System.out.println(new HeadlessSimulation().run(turns));
+    }
+}
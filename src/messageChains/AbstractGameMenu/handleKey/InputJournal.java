@@ -0,0 +1,314 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.Component;
+import java.awt.event.KeyEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import de.mbi.goldenhasweg.util.Randomizer;
+
+/**
+ * Journal of all key events of a game. Every key event is stored with the
+ * number of the turn, in which it was handled. When the game ends, the number
+ * of turns played is stored, so the turns after the last key are replayed,
+ * too. Together with the seed of the randomizer a game can be replayed
+ * deterministically.
+ *
+ * @see InputReplay
+ */
+public class InputJournal {
+
+    private static final Logger LOG =
+        Logger.getLogger(InputJournal.class.getName());
+
+    /** System property with the file to record the journal to. */
+    public static final String FILE_PROPERTY = "goldenhasweg.journal";
+
+    private static final int MAGIC = 0x47484a4e;
+    private static final int VERSION = 2;
+
+    // key code of the entry, that marks the end of the game
+    private static final int END_OF_GAME = -1;
+
+    /**
+     * A recorded key event.
+     */
+    public static final class Entry {
+        private final int turn;
+        private final int keyCode;
+        private final char keyChar;
+        private final int modifiers;
+
+        /**
+         * Creates a new entry
+         *
+         * @param turn
+         *            turn number
+         * @param keyCode
+         *            key code
+         * @param keyChar
+         *            key char
+         * @param modifiers
+         *            modifiers
+         */
+        Entry(final int turn, final int keyCode, final char keyChar,
+                final int modifiers) {
+            this.turn = turn;
+            this.keyCode = keyCode;
+            this.keyChar = keyChar;
+            this.modifiers = modifiers;
+        }
+
+        /**
+         * Returns the number of the turn, in which the key was handled
+         *
+         * @return turn number
+         */
+        public int getTurn() {
+            return turn;
+        }
+
+        /**
+         * Creates a key event with the recorded values
+         *
+         * @param source
+         *            source of the event
+         * @return key event
+         */
+        public KeyEvent toKeyEvent(final Component source) {
+            return new KeyEvent(source, KeyEvent.KEY_PRESSED, 0, modifiers,
+                keyCode, keyChar);
+        }
+    }
+
+    private final int seed;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private DataOutputStream out = null;
+    private int endTurn = -1;
+
+    /**
+     * Creates a new journal
+     *
+     * @param seed
+     *            seed of the randomizer
+     */
+    public InputJournal(final int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Starts a new recording. A new seed is chosen and passed to the
+     * randomizer, so call this method before the world is initialized. If the
+     * system property {@link #FILE_PROPERTY} is set, every recorded key is
+     * written to this file immediately.
+     *
+     * @return new journal
+     */
+    public static InputJournal startRecording() {
+        InputJournal journal = new InputJournal((int) System.nanoTime());
+        Randomizer.setSeeds(journal.getSeed());
+
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file != null) {
+            try {
+                journal.writeTo(new FileOutputStream(file));
+            } catch (IOException e) {
+                LOG.throwing(InputJournal.class.getName(),
+                    "startRecording()", e);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Reads a journal from the given file
+     *
+     * @param file
+     *            name of the file
+     * @return journal
+     * @throws IOException
+     *             if the file cannot be read or is no journal
+     */
+    public static InputJournal read(final String file) throws IOException {
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                throw new IOException("not a journal: " + file);
+            }
+            InputJournal journal = new InputJournal(in.readInt());
+            while (true) {
+                int turn;
+                try {
+                    turn = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                Entry entry = new Entry(turn, in.readInt(), in.readChar(),
+                    in.readInt());
+                if (entry.keyCode == END_OF_GAME) {
+                    journal.endTurn = turn;
+                    break;
+                }
+                journal.entries.add(entry);
+            }
+            return journal;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the seed of the randomizer
+     *
+     * @return seed
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the recorded key events in the order of their occurrence. Keys
+     * are only kept in memory, while no output stream is attached. Keys
+     * written to a stream are read back by {@link #read(String)}.
+     *
+     * @return recorded key events
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns the number of turns of the recorded game
+     *
+     * @return number of turns or -1, if the end of the game wasn't recorded
+     */
+    public synchronized int getEndTurn() {
+        return endTurn;
+    }
+
+    /**
+     * Records a key event
+     *
+     * @param turn
+     *            number of the current turn
+     * @param keyEvent
+     *            key event
+     */
+    public synchronized void record(final int turn, final KeyEvent keyEvent) {
+        if (endTurn >= 0) {
+            return;
+        }
+        Entry entry = new Entry(turn, keyEvent.getKeyCode(),
+            keyEvent.getKeyChar(), keyEvent.getModifiersEx());
+        if (out == null) {
+            entries.add(entry);
+            return;
+        }
+
+        try {
+            writeEntry(entry);
+            out.flush();
+        } catch (IOException e) {
+            LOG.throwing(getClass().getName(), "record()", e);
+            out = null;
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Writes the journal to the given stream. All keys recorded later are
+     * appended to the stream, too. Keys written to the stream are not kept in
+     * memory, only keys recorded after the stream failed.
+     *
+     * @param stream
+     *            target stream
+     * @throws IOException
+     *             if the journal cannot be written
+     */
+    public synchronized void writeTo(final OutputStream stream)
+            throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(seed);
+        for (Entry entry : entries) {
+            writeEntry(entry);
+        }
+        if (endTurn >= 0) {
+            writeEntry(new Entry(endTurn, END_OF_GAME, '\0', 0));
+        }
+        out.flush();
+        entries.clear();
+    }
+
+    /**
+     * Records the end of the game and closes the output stream. Keys recorded
+     * later are ignored.
+     *
+     * @param turns
+     *            number of turns played
+     */
+    public synchronized void close(final int turns) {
+        if (endTurn >= 0) {
+            return;
+        }
+        endTurn = turns;
+        if (out != null) {
+            try {
+                writeEntry(new Entry(turns, END_OF_GAME, '\0', 0));
+                out.close();
+            } catch (IOException e) {
+                LOG.throwing(getClass().getName(), "close()", e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Writes a single entry to the output stream
+     *
+     * @param entry
+     *            entry
+     * @throws IOException
+     *             if the entry cannot be written
+     */
+    private void writeEntry(final Entry entry) throws IOException {
+        out.writeInt(entry.turn);
+        out.writeInt(entry.keyCode);
+        out.writeChar(entry.keyChar);
+        out.writeInt(entry.modifiers);
+    }
+}
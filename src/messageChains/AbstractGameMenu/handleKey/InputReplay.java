@@ -0,0 +1,101 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import javax.swing.JPanel;
+
+import de.mbi.goldenhasweg.util.Randomizer;
+import messageChains.AbstractGameMenu.handleKey.InputJournal.Entry;
+
+/**
+ * Replays a recorded journal without a view as fast as possible. The seed of
+ * the journal is passed to the randomizer before the world is initialized and
+ * every key is handled in the turn it was recorded in, so the replay repeats
+ * the recorded game. If the end of the game was recorded, the turns after the
+ * last key are replayed up to it.
+ *
+ * @see InputJournal
+ */
+public class InputReplay {
+
+    private static final Logger LOG =
+        Logger.getLogger(InputReplay.class.getName());
+
+    private final InputJournal journal;
+
+    /**
+     * Creates a new replay
+     *
+     * @param journal
+     *            recorded journal
+     */
+    public InputReplay(final InputJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Replays the journal with a new headless game controller.
+     *
+     * @return measured runtime of all replayed turns
+     */
+    public SimulationReport run() {
+        Randomizer.setSeeds(journal.getSeed());
+        HeadlessSimulation simulation = new HeadlessSimulation();
+        GameController controller = simulation.getController();
+        JPanel source = new JPanel();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+
+        long start = System.nanoTime();
+        for (Entry entry : journal.getEntries()) {
+            while (controller.getTurnNumber() < entry.getTurn()) {
+                simulation.runTurn(latencies);
+            }
+            controller.keyPressed(entry.toKeyEvent(source));
+        }
+        while (controller.getTurnNumber() < journal.getEndTurn()) {
+            simulation.runTurn(latencies);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        SimulationReport report = new SimulationReport(latencies, elapsed);
+        LOG.info(report.toString());
+        return report;
+    }
+
+    /**
+     * Replays the given journal file and prints the report.
+     *
+     * @param args
+     *            name of the journal file
+     * @throws IOException
+     *             if the journal cannot be read
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: InputReplay <journal file>");
+            return;
+        }
+        System.out.println(new InputReplay(InputJournal.read(args[0])).run());
+    }
+}
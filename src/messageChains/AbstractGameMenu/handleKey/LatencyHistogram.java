@@ -0,0 +1,154 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds. Values are counted in logarithmic
+ * buckets, each split into 8 linear sub buckets, so a percentile is accurate to
+ * about 12 percent. Recording a value does not allocate and does not lock.
+ * Values can be recorded and read from different threads.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency
+     *
+     * @param nanos
+     *            latency in nanoseconds
+     */
+    public void record(final long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded values
+     *
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the highest recorded value
+     *
+     * @return highest latency in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the latency at the given percentile. The upper bound of the
+     * matching bucket is returned, but never more than the maximum.
+     *
+     * @param percentile
+     *            percentile between 0 and 100
+     * @return latency in nanoseconds or 0, if nothing is recorded
+     */
+    public long getPercentile(final double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Removes all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.3f ms p99=%.3f ms max=%.3f ms",
+            getCount(), getPercentile(50) / 1000000.0,
+            getPercentile(99) / 1000000.0, getMax() / 1000000.0);
+    }
+
+    /**
+     * Returns the bucket of the given value
+     *
+     * @param value
+     *            non negative value
+     * @return index of the bucket
+     */
+    private static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value of the given bucket
+     *
+     * @param bucket
+     *            index of the bucket
+     * @return highest value, that is counted in the bucket
+     */
+    private static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,146 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The last composed frame of a z-level. While another level is displayed, the
+ * surface collects the cells, that changed by field changes. If the level is
+ * displayed again at the same position, only these cells and the selection
+ * marks must be composed again.
+ *
+ * A surface is used by the game thread only.
+ */
+final class LevelSurface implements FieldChangeListener {
+
+    private final int z;
+    private final RenderSnapshot surface = new RenderSnapshot();
+    private boolean valid = false;
+    private final int[] marks = new int[4];
+
+    private boolean[] dirty = new boolean[0];
+    // indices of the dirty cells, so a restore doesn't scan all cells
+    private int[] dirtyCells = new int[0];
+    private int dirtyCount = 0;
+
+    /**
+     * Creates a new, empty surface
+     *
+     * @param z
+     *            z-level of the surface
+     */
+    LevelSurface(final int z) {
+        this.z = z;
+    }
+
+    /**
+     * Stores a composed frame of the level
+     *
+     * @param composed
+     *            composed frame of this level
+     * @param cursorMarks
+     *            world positions of both cursors as x1, y1, x2, y2
+     */
+    void store(final RenderSnapshot composed, final int[] cursorMarks) {
+        surface.copyFrom(composed);
+        System.arraycopy(cursorMarks, 0, marks, 0, marks.length);
+        int cells = surface.getWidth() * surface.getHeight();
+        if (dirty.length != cells) {
+            dirty = new boolean[cells];
+            dirtyCells = new int[cells];
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                dirty[dirtyCells[i]] = false;
+            }
+        }
+        dirtyCount = 0;
+        valid = true;
+    }
+
+    /**
+     * Copies the stored frame into the given snapshot, if it shows the same
+     * part of the level.
+     *
+     * @param next
+     *            snapshot to fill
+     * @return false, if there is no matching frame
+     */
+    boolean restore(final RenderSnapshot next) {
+        if (!valid || next.getOffsetZ() != z
+                || !next.hasSameLayout(surface)) {
+            return false;
+        }
+        next.copyFrom(surface);
+        return true;
+    }
+
+    /**
+     * Returns the number of cells, that changed since the frame was stored
+     *
+     * @return number of changed cells
+     */
+    int getDirtyCount() {
+        return dirtyCount;
+    }
+
+    /**
+     * Returns the index of a changed cell
+     *
+     * @param i
+     *            number of the changed cell
+     * @return index of the cell, x + y * width
+     */
+    int getDirtyCell(final int i) {
+        return dirtyCells[i];
+    }
+
+    /**
+     * Returns the world positions of both cursors, when the frame was stored
+     *
+     * @return x1, y1, x2, y2
+     */
+    int[] getMarks() {
+        return marks;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fieldsChanged(final int minX, final int minY, final int maxX,
+            final int maxY, final int changedZ) {
+        if (!valid || changedZ != z) {
+            return;
+        }
+        int width = surface.getWidth();
+        int fromX = Math.max(0, minX - surface.getOffsetX());
+        int toX = Math.min(width - 1, maxX - surface.getOffsetX());
+        int fromY = Math.max(0, minY - surface.getOffsetY());
+        int toY = Math.min(surface.getHeight() - 1, maxY - surface.getOffsetY());
+        for (int iy = fromY; iy <= toY; iy++) {
+            for (int ix = fromX; ix <= toX; ix++) {
+                int index = ix + iy * width;
+                if (!dirty[index]) {
+                    dirty[index] = true;
+                    dirtyCells[dirtyCount++] = index;
+                }
+            }
+        }
+    }
+}
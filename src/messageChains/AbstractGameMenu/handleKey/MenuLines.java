@@ -0,0 +1,185 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.List;
+
+import de.mbi.goldenhasweg.view.game.GameMenuItem;
+
+/**
+ * Copy of the lines of a game menu. The menu and its items are changed by the
+ * game thread, while the panel paints the copy, which is never changed.
+ */
+final class MenuLines {
+
+    private final int layerVersion;
+    private final String headline;
+    private final boolean firstPage;
+    private final boolean lastPage;
+    private final char[] keys;
+    private final String[] descriptions;
+    private final boolean[] selected;
+    private final char[] footerKeys;
+    private final String[] footerDescriptions;
+
+    /**
+     * Copies the lines of the given menu. Call this constructor at the game
+     * thread.
+     *
+     * @param menu
+     *            menu
+     * @param layerVersion
+     *            layer version of the model
+     */
+    MenuLines(final GameMenu menu, final int layerVersion) {
+        this.layerVersion = layerVersion;
+        this.headline = menu.getHeadline();
+        this.firstPage = menu.isFirstPage();
+        this.lastPage = menu.isLastPage();
+
+        List<GameMenuItem> items = menu.getMenuItems();
+        keys = new char[items.size()];
+        descriptions = new String[items.size()];
+        selected = new boolean[items.size()];
+        for (int i = 0; i < keys.length; i++) {
+            GameMenuItem item = items.get(i);
+            keys[i] = item.getKey();
+            descriptions[i] = item.getDescription();
+            selected[i] = item.isSelected();
+        }
+
+        List<GameMenuItem> footer = menu.getFooterMenuItems();
+        footerKeys = new char[footer.size()];
+        footerDescriptions = new String[footer.size()];
+        for (int i = 0; i < footerKeys.length; i++) {
+            footerKeys[i] = footer.get(i).getKey();
+            footerDescriptions[i] = footer.get(i).getDescription();
+        }
+    }
+
+    /**
+     * Returns the layer version of the model, when the menu was copied
+     *
+     * @return layer version
+     */
+    int getLayerVersion() {
+        return layerVersion;
+    }
+
+    /**
+     * Returns the headline
+     *
+     * @return headline
+     */
+    String getHeadline() {
+        return headline;
+    }
+
+    /**
+     * Returns true, if the menu has no pages before the current page
+     *
+     * @return true, if this is the first page
+     */
+    boolean isFirstPage() {
+        return firstPage;
+    }
+
+    /**
+     * Returns true, if the menu has no pages after the current page
+     *
+     * @return true, if this is the last page
+     */
+    boolean isLastPage() {
+        return lastPage;
+    }
+
+    /**
+     * Returns the number of menu items
+     *
+     * @return number of items
+     */
+    int getItemCount() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key of a menu item
+     *
+     * @param index
+     *            index of the item
+     * @return key or ' ', if the item is a text line
+     */
+    char getKey(final int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the description of a menu item
+     *
+     * @param index
+     *            index of the item
+     * @return description
+     */
+    String getDescription(final int index) {
+        return descriptions[index];
+    }
+
+    /**
+     * Returns true, if a menu item is selected
+     *
+     * @param index
+     *            index of the item
+     * @return true, if the item is selected
+     */
+    boolean isSelected(final int index) {
+        return selected[index];
+    }
+
+    /**
+     * Returns the number of footer items
+     *
+     * @return number of footer items
+     */
+    int getFooterCount() {
+        return footerKeys.length;
+    }
+
+    /**
+     * Returns the key of a footer item
+     *
+     * @param index
+     *            index of the footer item
+     * @return key or ' ', if the item is a text line
+     */
+    char getFooterKey(final int index) {
+        return footerKeys[index];
+    }
+
+    /**
+     * Returns the description of a footer item
+     *
+     * @param index
+     *            index of the footer item
+     * @return description
+     */
+    String getFooterDescription(final int index) {
+        return footerDescriptions[index];
+    }
+}
@@ -0,0 +1,208 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.mbi.goldenhasweg.game.Field;
+
+/**
+ * The whole map of one z-level at reduced resolution. Every pixel of the
+ * overview summarizes a square block of fields by the average color of its
+ * cells. The overview listens to field changes and only computes the blocks,
+ * that changed since the last refresh. The whole level is only read at the
+ * first refresh.
+ *
+ * The overview is used by the game thread only.
+ */
+public class Overview implements FieldChangeListener {
+
+    /** Maximum number of blocks in a row or column. */
+    public static final int MAX_SIZE = 256;
+
+    private final int z;
+    private final int blockSize;
+    private final int sizeX;
+    private final int sizeY;
+    private final int width;
+    private final int height;
+
+    private final int[] colors;
+    private final boolean[] dirty;
+    // indices of the dirty blocks, so a refresh doesn't scan all blocks
+    private final int[] dirtyBlocks;
+    private int dirtyCount = 0;
+
+    private final RenderCell cell = new RenderCell();
+
+    /**
+     * Creates a new overview of the given z-level. All blocks are computed at
+     * the first refresh.
+     *
+     * @param z
+     *            z-level of the overview
+     */
+    public Overview(final int z) {
+        FieldGrid grid = FieldGrid.getInstance();
+        this.z = z;
+        this.sizeX = grid.getSizeX();
+        this.sizeY = grid.getSizeY();
+        this.blockSize =
+            Math.max(1, (Math.max(sizeX, sizeY) + MAX_SIZE - 1) / MAX_SIZE);
+        this.width = (sizeX + blockSize - 1) / blockSize;
+        this.height = (sizeY + blockSize - 1) / blockSize;
+
+        colors = new int[width * height];
+        dirty = new boolean[width * height];
+        dirtyBlocks = new int[width * height];
+        for (int i = 0; i < dirty.length; i++) {
+            markDirty(i);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fieldsChanged(final int minX, final int minY, final int maxX,
+            final int maxY, final int changedZ) {
+        if (changedZ != z) {
+            return;
+        }
+        int fromX = Math.max(0, minX) / blockSize;
+        int toX = Math.min(sizeX - 1, maxX) / blockSize;
+        int fromY = Math.max(0, minY) / blockSize;
+        int toY = Math.min(sizeY - 1, maxY) / blockSize;
+        for (int by = fromY; by <= toY; by++) {
+            for (int bx = fromX; bx <= toX; bx++) {
+                markDirty(bx + by * width);
+            }
+        }
+    }
+
+    /**
+     * Computes all blocks, that changed since the last refresh.
+     *
+     * @param turn
+     *            animation phase
+     * @param pause
+     *            true, if the game is paused
+     */
+    public void refresh(final int turn, final boolean pause) {
+        for (int i = 0; i < dirtyCount; i++) {
+            int block = dirtyBlocks[i];
+            colors[block] = computeBlock(block % width, block / width, turn,
+                pause);
+            dirty[block] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Returns the z-level of the overview
+     *
+     * @return z-level
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Returns the number of fields in a row and in a column of a block
+     *
+     * @return size of a block in fields
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the number of blocks in a row
+     *
+     * @return width in blocks
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of blocks in a column
+     *
+     * @return height in blocks
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the colors of all blocks row by row. The array is changed by the
+     * next refresh.
+     *
+     * @return RGB values of the blocks
+     */
+    public int[] getColors() {
+        return colors;
+    }
+
+    // private methods
+
+    private void markDirty(final int block) {
+        if (!dirty[block]) {
+            dirty[block] = true;
+            dirtyBlocks[dirtyCount++] = block;
+        }
+    }
+
+    /**
+     * Returns the average color of the cells of a block. The color of a cell
+     * is the foreground color, if it shows a character, otherwise the
+     * background color.
+     */
+    private int computeBlock(final int bx, final int by, final int turn,
+            final boolean pause) {
+        FieldGrid grid = FieldGrid.getInstance();
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        int count = 0;
+        int maxX = Math.min(sizeX, (bx + 1) * blockSize);
+        int maxY = Math.min(sizeY, (by + 1) * blockSize);
+        for (int y = by * blockSize; y < maxY; y++) {
+            for (int x = bx * blockSize; x < maxX; x++) {
+                Field field = grid.getField(x, y, z);
+                if (field == null) {
+                    continue;
+                }
+                cell.setCharacter(0);
+                cell.setBackgroundRgb(0xFF000000);
+                field.paint(cell, turn, pause);
+                int rgb = cell.getCharacter() == 0
+                        || cell.getCharacter() == ' ' ? cell.getBackgroundRgb()
+                        : cell.getForegroundRgb();
+                red += (rgb >> 16) & 0xFF;
+                green += (rgb >> 8) & 0xFF;
+                blue += rgb & 0xFF;
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        return (red / count) << 16 | (green / count) << 8 | blue / count;
+    }
+}
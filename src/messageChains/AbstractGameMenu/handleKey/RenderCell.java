@@ -0,0 +1,137 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.Color;
+
+import de.mbi.goldenhasweg.util.GraphicCharacter;
+
+/**
+ * A cell, that keeps its colors as primitive ARGB values. Fields, dwarfs and
+ * resources paint into it like into any {@link GraphicCharacter}, the colors
+ * they pass are stored without copying. Code of the game view sets and reads
+ * the ARGB values directly, so painting a cell allocates nothing. A color
+ * object is only created, if a color set as ARGB value is read as color.
+ */
+final class RenderCell extends GraphicCharacter {
+
+    private int character = 0;
+    private int foregroundRgb = Color.WHITE.getRGB();
+    private int backgroundRgb = Color.BLACK.getRGB();
+    // null, if the color was set as ARGB value
+    private Color foregroundColor = Color.WHITE;
+    private Color backgroundColor = Color.BLACK;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCharacter() {
+        return character;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCharacter(final int character) {
+        this.character = character;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Color getForegroundColor() {
+        if (foregroundColor == null) {
+            foregroundColor = new Color(foregroundRgb, true);
+        }
+        return foregroundColor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setForegroundColor(final Color color) {
+        foregroundColor = color;
+        foregroundRgb = color.getRGB();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Color getBackgroundColor() {
+        if (backgroundColor == null) {
+            backgroundColor = new Color(backgroundRgb, true);
+        }
+        return backgroundColor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBackgroundColor(final Color color) {
+        backgroundColor = color;
+        backgroundRgb = color.getRGB();
+    }
+
+    /**
+     * Returns the foreground color
+     *
+     * @return foreground color as ARGB value
+     */
+    public int getForegroundRgb() {
+        return foregroundRgb;
+    }
+
+    /**
+     * Sets the foreground color
+     *
+     * @param rgb
+     *            foreground color as ARGB value
+     */
+    public void setForegroundRgb(final int rgb) {
+        foregroundRgb = rgb;
+        foregroundColor = null;
+    }
+
+    /**
+     * Returns the background color
+     *
+     * @return background color as ARGB value
+     */
+    public int getBackgroundRgb() {
+        return backgroundRgb;
+    }
+
+    /**
+     * Sets the background color
+     *
+     * @param rgb
+     *            background color as ARGB value
+     */
+    public void setBackgroundRgb(final int rgb) {
+        backgroundRgb = rgb;
+        backgroundColor = null;
+    }
+}
@@ -0,0 +1,417 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.mbi.goldenhasweg.view.ScreenDefinition;
+
+/**
+ * The visible part of the world at the end of a turn: character, foreground
+ * and background color of every cell of the game frame including dwarfs,
+ * resources and selection marks. Colors are stored as ARGB values in arrays
+ * indexed by cell, so filling a snapshot allocates nothing.
+ *
+ * A snapshot is filled by the game thread and published afterwards. Once
+ * published it is not changed, until the panel has taken a newer one, so the
+ * panel can paint it while the game thread computes the next turn.
+ */
+final class RenderSnapshot {
+
+    private ScreenDefinition screenDefinition;
+    private int offsetX;
+    private int offsetY;
+    private int offsetZ;
+    private int width;
+    private int height;
+    private boolean pause;
+
+    private int[] characters = new int[0];
+    private int[] foregroundColors = new int[0];
+    private int[] backgroundColors = new int[0];
+
+    // copy of the overview, if it is shown instead of the cells
+    private boolean overview = false;
+    private int overviewWidth;
+    private int overviewHeight;
+    private int overviewBlockSize;
+    private int[] overviewColors = new int[0];
+
+    // copy of the menu, shared by all snapshots of the same layer version
+    private MenuLines menuLines;
+
+    /**
+     * Prepares the snapshot for a new frame. The arrays are only reallocated,
+     * if the size of the game frame changed.
+     *
+     * @param newScreenDefinition
+     *            screen definition of the frame
+     * @param newOffsetX
+     *            x position of the most left cell in the world
+     * @param newOffsetY
+     *            y position of the most upper cell in the world
+     * @param newOffsetZ
+     *            displayed z-level
+     * @param newPause
+     *            true, if the game is paused
+     */
+    void reset(final ScreenDefinition newScreenDefinition,
+            final int newOffsetX, final int newOffsetY, final int newOffsetZ,
+            final boolean newPause) {
+        screenDefinition = newScreenDefinition;
+        offsetX = newOffsetX;
+        offsetY = newOffsetY;
+        offsetZ = newOffsetZ;
+        width = newScreenDefinition.getWidthGameFrame() + 1;
+        height = newScreenDefinition.getHeight() + 1;
+        pause = newPause;
+        overview = false;
+
+        if (characters.length != width * height) {
+            characters = new int[width * height];
+            foregroundColors = new int[width * height];
+            backgroundColors = new int[width * height];
+        }
+    }
+
+    /**
+     * Stores the given cell. Only called before the snapshot is published.
+     *
+     * @param ix
+     *            x position at the screen
+     * @param iy
+     *            y position at the screen
+     * @param cell
+     *            cell
+     */
+    void set(final int ix, final int iy, final RenderCell cell) {
+        int index = ix + iy * width;
+        characters[index] = cell.getCharacter();
+        foregroundColors[index] = cell.getForegroundRgb();
+        backgroundColors[index] = cell.getBackgroundRgb();
+    }
+
+    /**
+     * Copies layout and cells of the other snapshot. Only called before the
+     * snapshot is published.
+     *
+     * @param other
+     *            snapshot of the cells
+     */
+    void copyFrom(final RenderSnapshot other) {
+        reset(other.screenDefinition, other.offsetX, other.offsetY,
+            other.offsetZ, other.pause);
+        System.arraycopy(other.characters, 0, characters, 0,
+            characters.length);
+        System.arraycopy(other.foregroundColors, 0, foregroundColors, 0,
+            foregroundColors.length);
+        System.arraycopy(other.backgroundColors, 0, backgroundColors, 0,
+            backgroundColors.length);
+    }
+
+    /**
+     * Shows the given overview instead of the cells. Only called before the
+     * snapshot is published.
+     *
+     * @param source
+     *            refreshed overview
+     */
+    void setOverview(final Overview source) {
+        overview = true;
+        overviewWidth = source.getWidth();
+        overviewHeight = source.getHeight();
+        overviewBlockSize = source.getBlockSize();
+        if (overviewColors.length != overviewWidth * overviewHeight) {
+            overviewColors = new int[overviewWidth * overviewHeight];
+        }
+        System.arraycopy(source.getColors(), 0, overviewColors, 0,
+            overviewColors.length);
+    }
+
+    /**
+     * Returns true, if the snapshot shows the overview instead of the cells
+     *
+     * @return true, if the overview is shown
+     */
+    public boolean isOverview() {
+        return overview;
+    }
+
+    /**
+     * Returns the number of blocks in a row of the overview
+     *
+     * @return width of the overview
+     */
+    public int getOverviewWidth() {
+        return overviewWidth;
+    }
+
+    /**
+     * Returns the number of blocks in a column of the overview
+     *
+     * @return height of the overview
+     */
+    public int getOverviewHeight() {
+        return overviewHeight;
+    }
+
+    /**
+     * Returns the number of fields in a row and in a column of a block
+     *
+     * @return size of a block in fields
+     */
+    public int getOverviewBlockSize() {
+        return overviewBlockSize;
+    }
+
+    /**
+     * Returns the colors of the overview row by row. The array must not be
+     * changed.
+     *
+     * @return RGB values of the blocks
+     */
+    public int[] getOverviewColors() {
+        return overviewColors;
+    }
+
+    /**
+     * Returns true, if the other snapshot has the same screen definition and
+     * pause mode, so both can be compared after shifting them by the
+     * difference of their offsets.
+     *
+     * @param other
+     *            other snapshot
+     * @return true, if the other snapshot can be scrolled into this one
+     */
+    public boolean canScrollFrom(final RenderSnapshot other) {
+        return screenDefinition == other.screenDefinition
+                && pause == other.pause && !overview && !other.overview;
+    }
+
+    /**
+     * Copies all cells of the other snapshot, which are visible in this one,
+     * too. Only called before the snapshot is published.
+     *
+     * @param other
+     *            snapshot with the same screen definition
+     */
+    void copyShifted(final RenderSnapshot other) {
+        int dx = offsetX - other.offsetX;
+        int dy = offsetY - other.offsetY;
+        int fromX = Math.max(0, -dx);
+        int toX = Math.min(width, width - dx);
+        if (fromX >= toX) {
+            return;
+        }
+        for (int iy = Math.max(0, -dy); iy < Math.min(height, height - dy);
+                iy++) {
+            int target = fromX + iy * width;
+            int source = fromX + dx + (iy + dy) * width;
+            System.arraycopy(other.characters, source, characters, target,
+                toX - fromX);
+            System.arraycopy(other.foregroundColors, source,
+                foregroundColors, target, toX - fromX);
+            System.arraycopy(other.backgroundColors, source,
+                backgroundColors, target, toX - fromX);
+        }
+    }
+
+    /**
+     * Returns true, if the given cell of this snapshot shows the same part of
+     * the world as a cell of the other one.
+     *
+     * @param other
+     *            snapshot with the same screen definition
+     * @param ix
+     *            x position at the screen
+     * @param iy
+     *            y position at the screen
+     * @return true, if the world position of the cell is visible in the other
+     *         snapshot
+     */
+    public boolean isVisibleIn(final RenderSnapshot other, final int ix,
+            final int iy) {
+        int x = ix + offsetX - other.offsetX;
+        int y = iy + offsetY - other.offsetY;
+        return x >= 0 && x < other.width && y >= 0 && y < other.height;
+    }
+
+    /**
+     * Returns true, if the other snapshot shows the same part of the world
+     * with the same screen definition and pause mode, so both can be compared
+     * cell by cell. The z-level may differ.
+     *
+     * @param other
+     *            other snapshot
+     * @return true, if the layout of both snapshots is equal
+     */
+    public boolean hasSameLayout(final RenderSnapshot other) {
+        return screenDefinition == other.screenDefinition
+                && offsetX == other.offsetX && offsetY == other.offsetY
+                && pause == other.pause && !overview && !other.overview;
+    }
+
+    /**
+     * Returns true, if the given cell looks the same as the cell of the other
+     * snapshot at the same world position. The world position must be
+     * visible in both snapshots, see {@link #isVisibleIn(RenderSnapshot, int,
+     * int)}.
+     *
+     * @param other
+     *            other snapshot
+     * @param ix
+     *            x position at the screen
+     * @param iy
+     *            y position at the screen
+     * @return true, if character and colors of the cell are equal
+     */
+    public boolean isSameCell(final RenderSnapshot other, final int ix,
+            final int iy) {
+        int index = ix + iy * width;
+        int otherIndex =
+            ix + offsetX - other.offsetX + (iy + offsetY - other.offsetY)
+                    * width;
+        return characters[index] == other.characters[otherIndex]
+                && foregroundColors[index]
+                    == other.foregroundColors[otherIndex]
+                && backgroundColors[index]
+                    == other.backgroundColors[otherIndex];
+    }
+
+    /**
+     * Sets the copy of the menu, that is shown next to this frame. Only
+     * called before the snapshot is published.
+     *
+     * @param lines
+     *            copy of the menu or null, if no menu is set
+     */
+    void setMenuLines(final MenuLines lines) {
+        menuLines = lines;
+    }
+
+    /**
+     * Returns the copy of the menu, that is shown next to this frame
+     *
+     * @return copy of the menu or null, if no menu is set
+     */
+    MenuLines getMenuLines() {
+        return menuLines;
+    }
+
+    /**
+     * Returns the screen definition of this frame
+     *
+     * @return screen definition
+     */
+    public ScreenDefinition getScreenDefinition() {
+        return screenDefinition;
+    }
+
+    /**
+     * Returns the x position of the most left cell in the world
+     *
+     * @return x offset
+     */
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    /**
+     * Returns the y position of the most upper cell in the world
+     *
+     * @return y offset
+     */
+    public int getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * Returns the displayed z-level
+     *
+     * @return z offset
+     */
+    public int getOffsetZ() {
+        return offsetZ;
+    }
+
+    /**
+     * Returns the number of cells in a row
+     *
+     * @return width in cells
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return height in cells
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns true, if the game was paused
+     *
+     * @return true, if the game was paused
+     */
+    public boolean isPause() {
+        return pause;
+    }
+
+    /**
+     * Returns the character of the given cell
+     *
+     * @param ix
+     *            x position at the screen
+     * @param iy
+     *            y position at the screen
+     * @return character
+     */
+    public int getCharacter(final int ix, final int iy) {
+        return characters[ix + iy * width];
+    }
+
+    /**
+     * Returns the foreground color of the given cell
+     *
+     * @param ix
+     *            x position at the screen
+     * @param iy
+     *            y position at the screen
+     * @return foreground color as ARGB value
+     */
+    public int getForegroundRgb(final int ix, final int iy) {
+        return foregroundColors[ix + iy * width];
+    }
+
+    /**
+     * Returns the background color of the given cell
+     *
+     * @param ix
+     *            x position at the screen
+     * @param iy
+     *            y position at the screen
+     * @return background color as ARGB value
+     */
+    public int getBackgroundRgb(final int ix, final int iy) {
+        return backgroundColors[ix + iy * width];
+    }
+}
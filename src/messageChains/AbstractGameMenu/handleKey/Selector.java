@@ -33,6 +33,7 @@ import de.mbi.goldenhasweg.view.ScreenDefinition;
 class Selector {
     private int offsetX;
     private int offsetY;
+    private int offsetZ;
     private int selectorPosX;
     private int selectorPosY;
     private ScreenDefinition screenDefinition;
@@ -47,6 +48,7 @@ class Selector {
         this.screenDefinition = screenDefinition;
         offsetX = 0;
         offsetY = 0;
+        offsetZ = 0;
         selectorPosX = screenDefinition.getWidthGameFrame() / 2;
         selectorPosY = screenDefinition.getHeight() / 2;
     }
@@ -69,6 +71,41 @@ class Selector {
         return offsetY;
     }
 
+    /**
+     * Returns the displayed z-level.
+     * 
+     * @return z offset
+     */
+    public int getOffsetZ() {
+        return offsetZ;
+    }
+
+    /**
+     * Displays the z-level above the current one, if there is one.
+     */
+    public void previousLevel() {
+        setLevel(offsetZ - 1);
+    }
+
+    /**
+     * Displays the z-level below the current one, if there is one.
+     */
+    public void nextLevel() {
+        setLevel(offsetZ + 1);
+    }
+
+    /**
+     * Displays the given z-level. The level is limited to the levels of the
+     * world.
+     * 
+     * @param z
+     *            z-level
+     */
+    public void setLevel(final int z) {
+        offsetZ =
+            Math.max(0, Math.min(WorldMap.getInstance().getSizeZ() - 1, z));
+    }
+
     /**
      * Updates the x and the y offset. This changes the displayed fields.
      * 
@@ -157,8 +194,25 @@ class Selector {
      * @return position
      */
     public Pos getSelectedPosition() {
-        return new PosImpl(offsetX + selectorPosX, offsetY + selectorPosY,
-                0);
+        return new PosImpl(getSelectedX(), getSelectedY(), offsetZ);
+    }
+
+    /**
+     * Returns the x position in the world of the cursor.
+     * 
+     * @return x position
+     */
+    public int getSelectedX() {
+        return offsetX + selectorPosX;
+    }
+
+    /**
+     * Returns the y position in the world of the cursor.
+     * 
+     * @return y position
+     */
+    public int getSelectedY() {
+        return offsetY + selectorPosY;
     }
 
     /**
@@ -170,6 +224,7 @@ class Selector {
     public void copy(final Selector selector) {
         offsetX = selector.getOffsetX();
         offsetY = selector.getOffsetY();
+        offsetZ = selector.getOffsetZ();
         selectorPosX = selector.getSelectedPosX();
         selectorPosY = selector.getSelectedPosY();
     }
@@ -271,20 +326,20 @@ class Selector {
     }
 
     /**
-     * Centers the screen at the given position.
+     * Centers the screen at the given position and displays its z-level.
      * 
      * @param pos
      *            position to center.
      */
     public void center(final Pos pos) {
+        setLevel(pos.getZ());
         int newOffsetX = pos.getX() - screenDefinition.getWidthGameFrame()
                 / 2;
         int newOffsetY = pos.getY() - screenDefinition.getHeight() / 2;
         setOffset(newOffsetX - offsetX, newOffsetY - offsetY);
 
-        Pos selectedPos = getSelectedPosition();
-        int newSelector1PosX = pos.getX() - selectedPos.getX();
-        int newSelector1PosY = pos.getY() - selectedPos.getY();
+        int newSelector1PosX = pos.getX() - getSelectedX();
+        int newSelector1PosY = pos.getY() - getSelectedY();
         setSelectedPos(newSelector1PosX, newSelector1PosY);
     }
 
@@ -296,8 +351,23 @@ class Selector {
      * @return true, if the given position is the selected position.
      */
     public boolean isSelectedPosition(final Pos pos) {
-        return offsetX + selectorPosX == pos.getX()
-                && offsetY + selectorPosY == pos.getY();
+        return isSelectedPosition(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * returns true, if the given position is the selected position.
+     * 
+     * @param x
+     *            x position in the world
+     * @param y
+     *            y position in the world
+     * @param z
+     *            z position in the world
+     * @return true, if the given position is the selected position.
+     */
+    public boolean isSelectedPosition(final int x, final int y, final int z) {
+        return offsetX + selectorPosX == x && offsetY + selectorPosY == y
+                && offsetZ == z;
     }
 
     /**
@@ -0,0 +1,114 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a headless simulation: number of turns, turns per second and the
+ * latency percentiles of a single turn.
+ */
+public class SimulationReport {
+
+    private final LatencyHistogram latencies;
+    private final long elapsedNanos;
+
+    /**
+     * Creates a new report
+     *
+     * @param latencies
+     *            runtime of every turn in nanoseconds, one value per turn
+     * @param elapsedNanos
+     *            runtime of all turns in nanoseconds
+     */
+    SimulationReport(final LatencyHistogram latencies,
+            final long elapsedNanos) {
+        this.latencies = latencies;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of simulated turns
+     *
+     * @return number of turns
+     */
+    public int getTurns() {
+        return (int) latencies.getCount();
+    }
+
+    /**
+     * Returns the runtime of all turns
+     *
+     * @return runtime in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of turns per second
+     *
+     * @return turns per second
+     */
+    public double getTurnsPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return latencies.getCount() * (double) TimeUnit.SECONDS.toNanos(1)
+                / elapsedNanos;
+    }
+
+    /**
+     * Returns the runtime of a turn at the given percentile. The runtime is
+     * accurate to about 12 percent, the maximum is exact.
+     *
+     * @param percentile
+     *            percentile between 0 and 100
+     * @return latency in nanoseconds or 0, if no turn was simulated
+     */
+    public long getLatencyPercentile(final double percentile) {
+        return latencies.getPercentile(percentile);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format(
+            "%d turns, %.1f turns/s, latency p50=%.3f ms p90=%.3f ms "
+                    + "p99=%.3f ms max=%.3f ms", getTurns(),
+            getTurnsPerSecond(), millis(getLatencyPercentile(50)),
+            millis(getLatencyPercentile(90)),
+            millis(getLatencyPercentile(99)),
+            millis(getLatencyPercentile(100)));
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds
+     *
+     * @param nanos
+     *            nanoseconds
+     * @return milliseconds
+     */
+    private static double millis(final long nanos) {
+        return nanos / 1000000.0;
+    }
+}
@@ -0,0 +1,67 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Speed of the simulation relative to the normal tick rate.
+ */
+public enum SimulationSpeed {
+
+    /** normal speed */
+    NORMAL(1),
+    /** two times faster */
+    DOUBLE(2),
+    /** four times faster */
+    QUADRUPLE(4),
+    /** eight times faster */
+    OCTUPLE(8),
+    /** as fast as possible */
+    MAXIMUM(0);
+
+    private final int factor;
+
+    /**
+     * Creates a new speed
+     *
+     * @param factor
+     *            factor of the normal tick rate, 0 for unlimited
+     */
+    private SimulationSpeed(final int factor) {
+        this.factor = factor;
+    }
+
+    /**
+     * Returns the factor of the normal tick rate
+     *
+     * @return factor or 0, if the speed is unlimited
+     */
+    public int getFactor() {
+        return factor;
+    }
+
+    /**
+     * Returns true, if the simulation runs as fast as possible
+     *
+     * @return true, if the speed is unlimited
+     */
+    public boolean isUnlimited() {
+        return factor == 0;
+    }
+}
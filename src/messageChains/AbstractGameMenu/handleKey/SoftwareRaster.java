@@ -0,0 +1,209 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Renders the cells of the game frame without Java2D. The character tiles are
+ * kept as a mask, that tells for every pixel, if it shows the foreground
+ * color, an own color or the background. The cells are written directly into
+ * the pixel array of an image, which is drawn with one call afterwards.
+ *
+ * A raster is not thread-safe, it must only be used by the painting thread.
+ */
+final class SoftwareRaster {
+
+    /** System property, that enables the software raster. */
+    public static final String PROPERTY = "goldenhasweg.render.raster";
+
+    private static final byte BACKGROUND = 0;
+    private static final byte FOREGROUND = 1;
+    private static final byte OWN_COLOR = 2;
+
+    private static final int COLUMNS = 16;
+    private static final int CELLS = 256;
+    private static final int BLOCK = 219;
+    private static final int WHITE = Color.WHITE.getRGB();
+    private static final int BLACK = Color.BLACK.getRGB();
+
+    private final String filename;
+    private final int cellWidth;
+    private final int cellHeight;
+
+    // mask and own colors of all characters, character by character
+    private byte[] mask;
+    private int[] ownColors;
+    private boolean unavailable = false;
+
+    private BufferedImage image;
+    private int[] pixels;
+
+    /**
+     * Creates a new raster
+     *
+     * @param filename
+     *            name of the tile image
+     * @param cellWidth
+     *            width of a character
+     * @param cellHeight
+     *            height of a character
+     */
+    SoftwareRaster(final String filename, final int cellWidth,
+            final int cellHeight) {
+        this.filename = filename;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+    }
+
+    /**
+     * Renders the given cells of the snapshot and draws them.
+     *
+     * @param g
+     *            Graphics
+     * @param snapshot
+     *            snapshot to render
+     * @param left
+     *            x position of the game frame in pixels
+     * @param top
+     *            y position of the game frame in pixels
+     * @param minX
+     *            most left cell, inclusive
+     * @param maxX
+     *            most right cell, inclusive
+     * @param minY
+     *            most upper cell, inclusive
+     * @param maxY
+     *            most lower cell, inclusive
+     * @param component
+     *            component, that is painted
+     * @return false, if the tile image couldn't be loaded
+     */
+    public boolean draw(final Graphics g, final RenderSnapshot snapshot,
+            final int left, final int top, final int minX, final int maxX,
+            final int minY, final int maxY, final Component component) {
+        if (mask == null) {
+            if (unavailable || !loadMask(component)) {
+                unavailable = true;
+                return false;
+            }
+        }
+        int width = snapshot.getWidth() * cellWidth;
+        int height = snapshot.getHeight() * cellHeight;
+        if (image == null || image.getWidth() != width
+                || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels =
+                ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        if (minX > maxX || minY > maxY) {
+            return true;
+        }
+
+        for (int iy = minY; iy <= maxY; iy++) {
+            for (int ix = minX; ix <= maxX; ix++) {
+                renderCell(ix * cellWidth + iy * cellHeight * width, width,
+                    snapshot.getCharacter(ix, iy),
+                    snapshot.getForegroundRgb(ix, iy),
+                    snapshot.getBackgroundRgb(ix, iy));
+            }
+        }
+
+        int sx = minX * cellWidth;
+        int sy = minY * cellHeight;
+        int sw = (maxX - minX + 1) * cellWidth;
+        int sh = (maxY - minY + 1) * cellHeight;
+        g.drawImage(image, left + sx, top + sy, left + sx + sw, top + sy + sh,
+            sx, sy, sx + sw, sy + sh, null);
+        return true;
+    }
+
+    // private methods
+
+    /**
+     * Writes the pixels of a cell. Background pixels show the block character
+     * in the background color, like the panel draws it.
+     */
+    private void renderCell(final int offset, final int width, final int c,
+            final int foreground, final int background) {
+        int glyph = (c & (CELLS - 1)) * cellWidth * cellHeight;
+        int block = BLOCK * cellWidth * cellHeight;
+        boolean hasBackground = background != BLACK;
+        int i = 0;
+        for (int py = 0; py < cellHeight; py++) {
+            int row = offset + py * width;
+            for (int px = 0; px < cellWidth; px++, i++) {
+                int rgb;
+                byte type = mask[glyph + i];
+                if (type == FOREGROUND) {
+                    rgb = foreground;
+                } else if (type == OWN_COLOR) {
+                    rgb = ownColors[glyph + i];
+                } else if (hasBackground && mask[block + i] == FOREGROUND) {
+                    rgb = background;
+                } else {
+                    rgb = 0;
+                }
+                pixels[row + px] = rgb;
+            }
+        }
+    }
+
+    /**
+     * Converts the tile image into the mask. White pixels are tinted by the
+     * foreground color, transparent pixels show the background, all other
+     * pixels keep their color.
+     */
+    private boolean loadMask(final Component component) {
+        int[] tiles =
+            GlyphAtlas.loadTiles(filename, cellWidth, cellHeight, component);
+        if (tiles == null) {
+            return false;
+        }
+
+        int tilesWidth = COLUMNS * cellWidth;
+        int cellSize = cellWidth * cellHeight;
+        mask = new byte[CELLS * cellSize];
+        ownColors = new int[CELLS * cellSize];
+        for (int c = 0; c < CELLS; c++) {
+            int left = c % COLUMNS * cellWidth;
+            int top = c / COLUMNS * cellHeight;
+            for (int py = 0; py < cellHeight; py++) {
+                for (int px = 0; px < cellWidth; px++) {
+                    int pixel = tiles[left + px + (top + py) * tilesWidth];
+                    int index = c * cellSize + px + py * cellWidth;
+                    if (pixel == WHITE) {
+                        mask[index] = FOREGROUND;
+                    } else if (pixel >>> 24 == 0) {
+                        mask[index] = BACKGROUND;
+                    } else {
+                        mask[index] = OWN_COLOR;
+                        ownColors[index] = pixel;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,180 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Measures the runtime of the phases of the game loop. Every phase has its own
+ * latency histogram, which can be read at runtime. In a fixed interval a
+ * summary of all phases is logged and the histograms are reset.
+ *
+ * Path finding is executed inside the turn of a dwarf and is part of the
+ * dwarf phase.
+ */
+public class TurnProfiler {
+
+    private static final Logger LOG =
+        Logger.getLogger(TurnProfiler.class.getName());
+
+    /** System property with the file pattern of the rolling profile log. */
+    public static final String LOG_FILE_PROPERTY = "goldenhasweg.profile.log";
+
+    /** Default interval between two summaries in seconds. */
+    public static final int DEFAULT_LOG_INTERVAL = 60;
+
+    private static final int LOG_FILE_LIMIT = 1024 * 1024;
+    private static final int LOG_FILE_COUNT = 5;
+
+    // handler of the rolling log, shared by all profilers
+    private static FileHandler rollingHandler = null;
+
+    /**
+     * Measured phases of the game loop.
+     */
+    public enum Phase {
+        /** turn of all dwarfs including their path finding */
+        DWARF_TURNS,
+        /** maintenance of the action list */
+        ACTION_LIST,
+        /** update of the model, e.g. animation phase */
+        MODEL_UPDATE,
+        /** composition of the visible world into a render snapshot */
+        COMPOSE,
+        /** painting of the game panel */
+        REPAINT
+    }
+
+    private final Map<Phase, LatencyHistogram> histograms =
+        new EnumMap<Phase, LatencyHistogram>(Phase.class);
+    private final long logIntervalNanos;
+    private long nextLog;
+
+    /**
+     * Creates a new profiler with the default log interval. If the system
+     * property {@link #LOG_FILE_PROPERTY} is set, the summaries are written to
+     * a rolling log file.
+     */
+    public TurnProfiler() {
+        this(DEFAULT_LOG_INTERVAL);
+        String pattern = System.getProperty(LOG_FILE_PROPERTY);
+        if (pattern != null) {
+            enableRollingLog(pattern);
+        }
+    }
+
+    /**
+     * Creates a new profiler
+     *
+     * @param logIntervalSeconds
+     *            interval between two summaries in seconds
+     */
+    public TurnProfiler(final int logIntervalSeconds) {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+        logIntervalNanos = TimeUnit.SECONDS.toNanos(logIntervalSeconds);
+        nextLog = System.nanoTime() + logIntervalNanos;
+    }
+
+    /**
+     * Writes the summaries additionally to a rolling log file. The log file is
+     * opened once for all profilers, further calls keep the first file.
+     *
+     * @param pattern
+     *            file pattern, see {@link FileHandler}
+     * @return true, if the log file is open
+     */
+    public static synchronized boolean enableRollingLog(final String pattern) {
+        if (rollingHandler != null) {
+            return true;
+        }
+        try {
+            FileHandler handler =
+                new FileHandler(pattern, LOG_FILE_LIMIT, LOG_FILE_COUNT, true);
+            handler.setFormatter(new SimpleFormatter());
+            LOG.addHandler(handler);
+            rollingHandler = handler;
+            return true;
+        } catch (IOException e) {
+            LOG.throwing(TurnProfiler.class.getName(), "enableRollingLog()", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the start time of a measurement
+     *
+     * @return start time in nanoseconds
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the runtime of a phase
+     *
+     * @param phase
+     *            measured phase
+     * @param start
+     *            start time returned by {@link #start()}
+     */
+    public void stop(final Phase phase, final long start) {
+        histograms.get(phase).record(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the histogram of the given phase
+     *
+     * @param phase
+     *            phase
+     * @return histogram of the phase since the last summary
+     */
+    public LatencyHistogram getHistogram(final Phase phase) {
+        return histograms.get(phase);
+    }
+
+    /**
+     * Logs a summary of all phases and resets the histograms, if the log
+     * interval is over.
+     */
+    public void logIfDue() {
+        long now = System.nanoTime();
+        if (now - nextLog < 0) {
+            return;
+        }
+        nextLog = now + logIntervalNanos;
+
+        StringBuilder summary = new StringBuilder("turn profile:");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = histograms.get(phase);
+            summary.append("\n  ").append(phase).append(' ')
+                .append(histogram);
+            histogram.reset();
+        }
+        LOG.info(summary.toString());
+    }
+}
@@ -0,0 +1,247 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Fixed timestep scheduler of the game loop. Game ticks and rendered frames
+ * have their own cadence, both based on {@link System#nanoTime()}. If the
+ * simulation falls behind, missed ticks are caught up to a limit, so a slow
+ * frame never slows down the simulation and a slow turn never freezes the
+ * screen for long.
+ */
+class TurnScheduler {
+
+    private static final Logger LOG =
+        Logger.getLogger(TurnScheduler.class.getName());
+
+    /** Default number of game ticks per second. */
+    public static final int DEFAULT_TICKS_PER_SECOND = 4;
+
+    /** Default number of rendered frames per second. */
+    public static final int DEFAULT_FRAMES_PER_SECOND = 4;
+
+    /** Default number of missed ticks that are caught up at once. */
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+
+    /** Maximum number of frames skipped in a row, if ticks are behind. */
+    public static final int MAX_FRAME_SKIP = 4;
+
+    private final long normalTickNanos;
+    private final long frameNanos;
+    private final int normalMaxCatchUpTicks;
+
+    private SimulationSpeed speed = SimulationSpeed.NORMAL;
+    private long tickNanos;
+    private int maxCatchUpTicks;
+
+    private long nextTick;
+    private long nextFrame;
+    private long droppedTicks = 0;
+    private int skippedFrames = 0;
+    private volatile boolean frameRequested = false;
+
+    /**
+     * Creates a new scheduler with the default tick and frame rate.
+     */
+    public TurnScheduler() {
+        this(DEFAULT_TICKS_PER_SECOND, DEFAULT_FRAMES_PER_SECOND,
+            DEFAULT_MAX_CATCH_UP_TICKS);
+    }
+
+    /**
+     * Creates a new scheduler
+     *
+     * @param ticksPerSecond
+     *            number of game ticks per second
+     * @param framesPerSecond
+     *            number of rendered frames per second
+     * @param maxCatchUpTicks
+     *            maximum number of missed ticks, that are caught up at once
+     */
+    public TurnScheduler(final int ticksPerSecond, final int framesPerSecond,
+            final int maxCatchUpTicks) {
+        if (ticksPerSecond <= 0 || framesPerSecond <= 0
+                || maxCatchUpTicks <= 0) {
+            throw new IllegalArgumentException(
+                "rates and catch up limit must be positive");
+        }
+        this.normalTickNanos = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        this.normalMaxCatchUpTicks = maxCatchUpTicks;
+        setSpeed(SimulationSpeed.NORMAL);
+        reset();
+    }
+
+    /**
+     * Changes the speed of the simulation. The tick rate is multiplied with
+     * the factor of the speed, the frame rate does not change. If the speed
+     * is unlimited, the maximum number of catch up ticks is processed in every
+     * iteration of the game loop.
+     *
+     * @param newSpeed
+     *            new speed
+     */
+    public final void setSpeed(final SimulationSpeed newSpeed) {
+        speed = newSpeed;
+        if (newSpeed.isUnlimited()) {
+            tickNanos = 0;
+            maxCatchUpTicks = normalMaxCatchUpTicks;
+        } else {
+            tickNanos = normalTickNanos / newSpeed.getFactor();
+            maxCatchUpTicks = normalMaxCatchUpTicks * newSpeed.getFactor();
+        }
+        nextTick = System.nanoTime();
+    }
+
+    /**
+     * Returns the current speed of the simulation
+     *
+     * @return current speed
+     */
+    public SimulationSpeed getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Restarts the schedule at the current time. The next tick and the next
+     * frame are due immediately.
+     */
+    public final void reset() {
+        long now = System.nanoTime();
+        nextTick = now;
+        nextFrame = now;
+    }
+
+    /**
+     * Returns the number of game ticks that are due now and advances the
+     * schedule. At most maxCatchUpTicks are returned, older ticks are dropped
+     * and the simulation falls behind the wall time.
+     *
+     * @return number of ticks to process
+     */
+    public int ticksDue() {
+        long now = System.nanoTime();
+        if (speed.isUnlimited()) {
+            nextTick = now;
+            return maxCatchUpTicks;
+        }
+        if (now - nextTick < 0) {
+            return 0;
+        }
+
+        long due = (now - nextTick) / tickNanos + 1;
+        if (due > maxCatchUpTicks) {
+            droppedTicks += due - maxCatchUpTicks;
+            LOG.warning("Operation too slow, dropped "
+                    + (due - maxCatchUpTicks) + " ticks");
+            nextTick = now + tickNanos;
+            return maxCatchUpTicks;
+        }
+        nextTick += due * tickNanos;
+        return (int) due;
+    }
+
+    /**
+     * Returns true, if a frame should be rendered now and advances the
+     * schedule. Frames that are missed are not rendered later. If the next
+     * tick is already due, the ticks can't keep up and up to MAX_FRAME_SKIP
+     * frames in a row are skipped to hold the simulation rate.
+     *
+     * @return true, if a frame should be rendered now
+     */
+    public boolean frameDue() {
+        long now = System.nanoTime();
+        if (now - nextFrame < 0) {
+            return false;
+        }
+
+        nextFrame += frameNanos;
+        if (now - nextFrame >= 0) {
+            nextFrame = now + frameNanos;
+        }
+
+        boolean behind = !speed.isUnlimited() && now - nextTick >= 0;
+        if (behind && skippedFrames < MAX_FRAME_SKIP) {
+            skippedFrames++;
+            return false;
+        }
+        skippedFrames = 0;
+        return true;
+    }
+
+    /**
+     * Requests an additional frame, e.g. because the cursor was moved. The
+     * given thread is woken up, if it is waiting in
+     * {@link #awaitNextEvent(boolean)}. This method can be called from any
+     * thread.
+     *
+     * @param gameThread
+     *            thread, that runs the game loop
+     */
+    public void requestFrame(final Thread gameThread) {
+        frameRequested = true;
+        LockSupport.unpark(gameThread);
+    }
+
+    /**
+     * Returns true, if an additional frame was requested since the last call
+     * and clears the request.
+     *
+     * @return true, if an additional frame was requested
+     */
+    public boolean takeFrameRequest() {
+        if (frameRequested) {
+            frameRequested = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blocks the calling thread until the next tick or the next frame is due
+     * or an additional frame is requested. If the game is paused, no tick is
+     * processed and only the next frame is awaited. Otherwise an unlimited
+     * speed would never wait and spin while paused.
+     *
+     * @param paused
+     *            true, if the game is paused and ticks aren't processed
+     */
+    public void awaitNextEvent(final boolean paused) {
+        long due = paused ? nextFrame : Math.min(nextTick, nextFrame);
+        long wait = due - System.nanoTime();
+        if (wait > 0 && !frameRequested) {
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    /**
+     * Returns the number of ticks, that were dropped since the scheduler was
+     * created.
+     *
+     * @return number of dropped ticks
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+}
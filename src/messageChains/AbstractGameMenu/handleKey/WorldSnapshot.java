@@ -0,0 +1,570 @@
+package messageChains.AbstractGameMenu.handleKey;
+
+/*
+ * The Golden Hasweg: A Dwarven Tale
+ *
+ * Copyright (C) 2010 Mathias Bielert
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+
+import de.mbi.goldenhasweg.game.Action;
+import de.mbi.goldenhasweg.game.ActionType;
+import de.mbi.goldenhasweg.game.Dwarf;
+import de.mbi.goldenhasweg.game.Field;
+import de.mbi.goldenhasweg.game.FieldType;
+import de.mbi.goldenhasweg.game.Resource;
+import de.mbi.goldenhasweg.game.Workshop;
+import de.mbi.goldenhasweg.game.action.ActionList;
+import de.mbi.goldenhasweg.game.dwarf.DwarfImpl;
+import de.mbi.goldenhasweg.game.dwarf.DwarfList;
+import de.mbi.goldenhasweg.game.map.FieldImpl;
+import de.mbi.goldenhasweg.game.map.WorldMap;
+import de.mbi.goldenhasweg.game.map.type.FieldTypeImpl;
+import de.mbi.goldenhasweg.game.resource.ResourceManager;
+import de.mbi.goldenhasweg.game.stockpile.StockpileManager;
+import de.mbi.goldenhasweg.game.workshop.WorkshopManager;
+
+/**
+ * State of the world at a turn boundary: the type of every field and the
+ * dwarfs. A snapshot is never changed after it was created, so it can be
+ * written by another thread.
+ *
+ * The binary format starts with a header of fixed size containing the size of
+ * the map and a palette of field types. The fields follow in regions of
+ * REGION_SIZE x REGION_SIZE cells per level, one byte per cell, each region at
+ * a fixed position of the file. The dwarfs are stored at the end of the file.
+ * Because the regions have fixed positions, a later save only needs to write
+ * the regions, that have changed.
+ *
+ * A captured snapshot only contains the regions, that changed since the
+ * previous save. The regions are copied at the game thread a few per turn by
+ * {@link #captureRegion(FieldGrid, int, byte[], StringBuilder)}, so no turn
+ * reads the whole world. A loaded snapshot contains all regions. It doesn't
+ * copy the cells, they stay in the memory mapped file and are paged in region
+ * by region, when the snapshot is restored.
+ *
+ * @see Autosave
+ */
+public final class WorldSnapshot {
+
+    /** Width and height of a region in cells. */
+    public static final int REGION_SIZE = 32;
+
+    static final int MAGIC = 0x47485753;
+    static final int VERSION = 2;
+    static final int MAX_PALETTE = 256;
+    static final int HEADER_SIZE = 32 + MAX_PALETTE * 2;
+
+    /**
+     * State of a dwarf.
+     */
+    static final class DwarfState {
+        private final String name;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final int endurance;
+        private final int satiety;
+        // keys of the accepted action types, null if all are accepted
+        private final char[] actions;
+
+        /**
+         * Creates a new dwarf state
+         *
+         * @param name
+         *            name
+         * @param x
+         *            x position
+         * @param y
+         *            y position
+         * @param z
+         *            z position
+         * @param endurance
+         *            endurance
+         * @param satiety
+         *            satiety
+         * @param actions
+         *            keys of the accepted action types or null, if all
+         *            action types are accepted
+         */
+        DwarfState(final String name, final int x, final int y, final int z,
+                final int endurance, final int satiety, final char[] actions) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.endurance = endurance;
+            this.satiety = satiety;
+            this.actions = actions;
+        }
+    }
+
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int turn;
+    private final char[] palette;
+    // cells region by region, REGION_SIZE x REGION_SIZE bytes per region,
+    // null if captured
+    private final ByteBuffer regions;
+    // changed regions by index, null if loaded
+    private final SortedMap<Integer, byte[]> changedRegions;
+    private final boolean complete;
+    private final List<DwarfState> dwarfs;
+
+    /**
+     * Creates a new snapshot
+     *
+     * @param sizeX
+     *            width of the map
+     * @param sizeY
+     *            height of the map
+     * @param sizeZ
+     *            number of levels
+     * @param turn
+     *            turn number
+     * @param palette
+     *            keys of the field types
+     * @param regions
+     *            palette index of every field, region by region, or null
+     * @param changedRegions
+     *            changed regions by index or null
+     * @param complete
+     *            true, if the snapshot contains all regions
+     * @param dwarfs
+     *            dwarfs
+     */
+    private WorldSnapshot(final int sizeX, final int sizeY, final int sizeZ,
+            final int turn, final char[] palette, final ByteBuffer regions,
+            final SortedMap<Integer, byte[]> changedRegions,
+            final boolean complete, final List<DwarfState> dwarfs) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.turn = turn;
+        this.palette = palette;
+        this.regions = regions;
+        this.changedRegions = changedRegions;
+        this.complete = complete;
+        this.dwarfs = dwarfs;
+    }
+
+    /**
+     * Copies the cells of a region of the current world into the given array.
+     * Call this method at the game thread between two turns.
+     *
+     * @param grid
+     *            grid of the current world map
+     * @param regionIndex
+     *            index of the region
+     * @param cells
+     *            target array with REGION_SIZE x REGION_SIZE bytes
+     * @param palette
+     *            palette of field type keys. New types are appended.
+     */
+    static void captureRegion(final FieldGrid grid, final int regionIndex,
+            final byte[] cells, final StringBuilder palette) {
+        int regionsX = regions(grid.getSizeX());
+        int regionsY = regions(grid.getSizeY());
+        int left = regionIndex % regionsX * REGION_SIZE;
+        int top = regionIndex / regionsX % regionsY * REGION_SIZE;
+        int z = regionIndex / (regionsX * regionsY);
+        int width = Math.min(REGION_SIZE, grid.getSizeX() - left);
+        int height = Math.min(REGION_SIZE, grid.getSizeY() - top);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Field field = grid.getField(left + x, top + y, z);
+                if (field != null) {
+                    cells[x + y * REGION_SIZE] =
+                        paletteIndex(palette, field.getType().getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a snapshot of the given regions and the current dwarfs. Call
+     * this method at the game thread between two turns, after the regions,
+     * that changed since they were copied, have been copied again.
+     *
+     * @param grid
+     *            grid of the current world map
+     * @param turn
+     *            number of the current turn
+     * @param palette
+     *            palette of field type keys
+     * @param changedRegions
+     *            regions, that changed since the previous save, by index
+     * @param complete
+     *            true, if all regions are given
+     * @return snapshot
+     */
+    static WorldSnapshot capture(final FieldGrid grid, final int turn,
+            final CharSequence palette,
+            final SortedMap<Integer, byte[]> changedRegions,
+            final boolean complete) {
+        List<DwarfState> dwarfs = new ArrayList<DwarfState>();
+        Iterator<Dwarf> iterator = DwarfList.getInstance().getDwarfs();
+        while (iterator.hasNext()) {
+            Dwarf dwarf = iterator.next();
+            Field position = dwarf.getPosition();
+            if (position != null) {
+                List<ActionType> accepted = dwarf.getAcceptedActions();
+                char[] actions = new char[accepted.size()];
+                for (int i = 0; i < actions.length; i++) {
+                    actions[i] = accepted.get(i).getKey();
+                }
+                dwarfs.add(new DwarfState(dwarf.getName(),
+                    position.getPos().getX(), position.getPos().getY(),
+                    position.getPos().getZ(), dwarf.getEndurance(),
+                    dwarf.getSatiety(), actions));
+            }
+        }
+
+        return new WorldSnapshot(grid.getSizeX(), grid.getSizeY(),
+            grid.getSizeZ(), turn, palette.toString().toCharArray(), null,
+            changedRegions, complete, Collections.unmodifiableList(dwarfs));
+    }
+
+    /**
+     * Loads a snapshot from the given file. The file is memory mapped, the
+     * cells are read from the mapping, when the snapshot is restored.
+     *
+     * @param file
+     *            snapshot file
+     * @return snapshot
+     * @throws IOException
+     *             if the file cannot be read or is no snapshot
+     */
+    public static WorldSnapshot load(final File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                throw new IOException("not a world snapshot: " + file);
+            }
+            int sizeX = buffer.getInt();
+            int sizeY = buffer.getInt();
+            int sizeZ = buffer.getInt();
+            int turn = buffer.getInt();
+            buffer.getInt(); // region size, always REGION_SIZE
+            char[] palette = new char[buffer.getInt()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = buffer.getChar();
+            }
+
+            int count = regions(sizeX) * regions(sizeY) * sizeZ;
+            buffer.position(HEADER_SIZE);
+            ByteBuffer regions = buffer.slice();
+            regions.limit(count * REGION_SIZE * REGION_SIZE);
+
+            buffer.position(regionOffset(count));
+            int dwarfCount = buffer.getInt();
+            List<DwarfState> dwarfs = new ArrayList<DwarfState>(dwarfCount);
+            for (int i = 0; i < dwarfCount; i++) {
+                char[] name = new char[buffer.getShort()];
+                for (int c = 0; c < name.length; c++) {
+                    name[c] = buffer.getChar();
+                }
+                int x = buffer.getInt();
+                int y = buffer.getInt();
+                int z = buffer.getInt();
+                int endurance = buffer.getInt();
+                int satiety = buffer.getInt();
+                // version 1 didn't store the actions, all were accepted
+                char[] actions = null;
+                if (version > 1) {
+                    actions = new char[buffer.getShort()];
+                    for (int c = 0; c < actions.length; c++) {
+                        actions[c] = buffer.getChar();
+                    }
+                }
+                dwarfs.add(new DwarfState(new String(name), x, y, z,
+                    endurance, satiety, actions));
+            }
+
+            return new WorldSnapshot(sizeX, sizeY, sizeZ, turn, palette,
+                regions, null, true, Collections.unmodifiableList(dwarfs));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Replaces the world map and the dwarf list by the state of this loaded
+     * snapshot. Actions, resources, workshops and stockpiles refer to fields
+     * of the replaced map and are removed, the snapshot doesn't contain them.
+     * The whole map is reported as changed. Call this method at the game
+     * thread between two turns.
+     *
+     * @throws IllegalStateException
+     *             if the snapshot was captured, not loaded
+     */
+    public void restore() {
+        if (regions == null) {
+            throw new IllegalStateException("only loaded snapshots restore");
+        }
+        clearManagers();
+        // the map is initialized level by level, row by row
+        WorldMap.init(new int[sizeZ][sizeY][sizeX]);
+        FieldGrid grid = FieldGrid.getInstance();
+
+        FieldType[] types = new FieldType[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            for (FieldType type : FieldTypeImpl.values()) {
+                if (type.getKey() == palette[i]) {
+                    types[i] = type;
+                }
+            }
+        }
+
+        int offset = 0;
+        for (int z = 0; z < sizeZ; z++) {
+            for (int top = 0; top < sizeY; top += REGION_SIZE) {
+                for (int left = 0; left < sizeX; left += REGION_SIZE) {
+                    int width = Math.min(REGION_SIZE, sizeX - left);
+                    int height = Math.min(REGION_SIZE, sizeY - top);
+                    for (int y = 0; y < height; y++) {
+                        for (int x = 0; x < width; x++) {
+                            FieldType type = types[regions.get(offset + x
+                                    + y * REGION_SIZE) & 0xFF];
+                            Field field =
+                                grid.getField(left + x, top + y, z);
+                            if (type != null && field instanceof FieldImpl) {
+                                ((FieldImpl) field).setType(type);
+                            }
+                        }
+                    }
+                    offset += REGION_SIZE * REGION_SIZE;
+                }
+            }
+        }
+
+        DwarfList.init();
+        for (DwarfState state : dwarfs) {
+            // the dwarf adds itself to the dwarf list
+            Dwarf dwarf = new DwarfImpl(state.name,
+                grid.getField(state.x, state.y, state.z));
+            dwarf.setEndurance(state.endurance);
+            dwarf.setSatiety(state.satiety);
+            if (state.actions == null) {
+                dwarf.acceptAllActions();
+            } else {
+                for (char key : state.actions) {
+                    for (ActionType type : ActionType.values()) {
+                        if (type.getKey() == key
+                                && !dwarf.getAcceptedActions().contains(type)) {
+                            dwarf.addAcceptedAction(type);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int z = 0; z < sizeZ; z++) {
+            FieldChangeNotifier.getInstance().fieldsChanged(0, 0, sizeX - 1,
+                sizeY - 1, z);
+        }
+    }
+
+    /**
+     * Returns the number of the turn of this snapshot
+     *
+     * @return turn number
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the number of regions of the map
+     *
+     * @return number of regions
+     */
+    int getRegionCount() {
+        return regions(sizeX) * regions(sizeY) * sizeZ;
+    }
+
+    /**
+     * Returns true, if the snapshot contains all regions
+     *
+     * @return true, if loaded or captured completely
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Writes the header into the given buffer
+     *
+     * @param buffer
+     *            buffer with at least HEADER_SIZE bytes remaining
+     */
+    void writeHeader(final ByteBuffer buffer) {
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sizeX).putInt(sizeY)
+            .putInt(sizeZ).putInt(turn).putInt(REGION_SIZE)
+            .putInt(palette.length);
+        for (char key : palette) {
+            buffer.putChar(key);
+        }
+        while (buffer.position() < HEADER_SIZE) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Returns the regions of a captured snapshot
+     *
+     * @return changed regions by index or null, if the snapshot was loaded
+     */
+    SortedMap<Integer, byte[]> getChangedRegions() {
+        return changedRegions;
+    }
+
+    /**
+     * Returns the dwarfs in binary format
+     *
+     * @return dwarfs section of the file
+     */
+    ByteBuffer getDwarfSection() {
+        int size = 4;
+        for (DwarfState state : dwarfs) {
+            size += 2 + state.name.length() * 2 + 5 * 4 + 2
+                    + state.actions.length * 2;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(dwarfs.size());
+        for (DwarfState state : dwarfs) {
+            buffer.putShort((short) state.name.length());
+            for (int c = 0; c < state.name.length(); c++) {
+                buffer.putChar(state.name.charAt(c));
+            }
+            buffer.putInt(state.x).putInt(state.y).putInt(state.z)
+                .putInt(state.endurance).putInt(state.satiety);
+            buffer.putShort((short) state.actions.length);
+            for (char key : state.actions) {
+                buffer.putChar(key);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the position of the given region in the file
+     *
+     * @param regionIndex
+     *            index of the region
+     * @return offset in bytes
+     */
+    static int regionOffset(final int regionIndex) {
+        return HEADER_SIZE + regionIndex * REGION_SIZE * REGION_SIZE;
+    }
+
+    /**
+     * Removes the actions, resources, workshops and stockpile fields, that
+     * refer to fields of the current map.
+     */
+    private static void clearManagers() {
+        ActionList actionList = ActionList.getInstance();
+        // new actions are only removed, after a turn has added them
+        for (int pass = 0; pass < 2; pass++) {
+            for (Action action : toList(actionList.getAllActions())) {
+                actionList.removeAction(action);
+            }
+            actionList.nextTurn();
+        }
+        // the resource manager exists, after the world was initialized
+        ResourceManager resourceManager = ResourceManager.getInstance();
+        if (resourceManager != null) {
+            for (Resource resource : toList(resourceManager.getResources())) {
+                resourceManager.removeResource(resource);
+            }
+        }
+        WorkshopManager workshopManager = WorkshopManager.getInstance();
+        for (Workshop workshop : toList(workshopManager.getWorkshops())) {
+            workshopManager.removeWorkshop(workshop);
+        }
+        StockpileManager stockpileManager = StockpileManager.getInstance();
+        for (Field field : toList(stockpileManager.getStockpileFields())) {
+            stockpileManager.removeStockpileField(field);
+        }
+    }
+
+    /**
+     * Copies the remaining elements of the given iterator into a list, so the
+     * underlying collection can be changed.
+     */
+    private static <T> List<T> toList(final Iterator<T> iterator) {
+        List<T> list = new ArrayList<T>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of regions needed for the given size
+     *
+     * @param size
+     *            size of the map in one dimension
+     * @return number of regions
+     */
+    static int regions(final int size) {
+        return (size + REGION_SIZE - 1) / REGION_SIZE;
+    }
+
+    /**
+     * Returns the index of the given key in the palette. Unknown keys are
+     * appended.
+     *
+     * @param palette
+     *            palette
+     * @param key
+     *            key of a field type
+     * @return palette index
+     */
+    private static byte paletteIndex(final StringBuilder palette,
+            final char key) {
+        for (int i = 0; i < palette.length(); i++) {
+            if (palette.charAt(i) == key) {
+                return (byte) i;
+            }
+        }
+        if (palette.length() < MAX_PALETTE) {
+            palette.append(key);
+            return (byte) (palette.length() - 1);
+        }
+        throw new IllegalStateException("too many field types");
+    }
+}